@@ -0,0 +1,468 @@
+package me.tiagovalente.jsonannotation;
+
+import me.tiagovalente.jsonannotation.JSONAnnotationParser.DuplicatedAnnotationException;
+import me.tiagovalente.jsonannotation.JSONAnnotationParser.InvalidAnnotationException;
+import me.tiagovalente.jsonannotation.JSONAnnotationParser.InvalidMemberException;
+import me.tiagovalente.jsonannotation.JSONAnnotationParser.MissingAnnotationException;
+import me.tiagovalente.jsonannotation.JSONAnnotationParser.UnparsableTypeException;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The annotated members of a class, as the parser needs them.
+ * Plans are built (and their annotations checked) once per class, and cached.
+ *
+ * A plan includes the members inherited from superclasses (which come first),
+ * flattened into a single array. An inherited transformation method is left out when
+ * the class overrides it with one of its own. Members for the same key are all bound,
+ * whichever class declares them (fields aren't overridden).
+ *
+ * Classes in a {@link PlanIndex} (written at build time by the {@link JSONParsableProcessor})
+ * have their members looked up by name instead of scanned for annotations.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+final class ClassPlan
+{
+    private static final ConcurrentMap<Class, ClassPlan> PLANS = new ConcurrentHashMap<Class, ClassPlan>();
+
+    /** The primitive types, which Class.forName doesn't load by name */
+    private static final Map<String, Class> PRIMITIVES = new HashMap<String, Class>();
+
+    static
+    {
+        for(Class c : new Class[] { boolean.class, byte.class, char.class, short.class,
+                                    int.class, long.class, float.class, double.class })
+            PRIMITIVES.put(c.getName(), c);
+    }
+
+    final Class type;
+    final Member[] members;
+
+    private ClassPlan(Class type, Member[] members)
+    {
+        this.type = type;
+        this.members = members;
+    }
+
+    static ClassPlan of(Class type)
+            throws MissingAnnotationException, DuplicatedAnnotationException, InvalidAnnotationException
+    {
+        ClassPlan plan = PLANS.get(type);
+
+        if(plan == null)
+        {
+            plan = build(type);
+            ClassPlan previous = PLANS.putIfAbsent(type, plan);
+            if(previous != null) plan = previous;
+        }
+
+        return plan;
+    }
+
+    private static ClassPlan build(Class type)
+            throws MissingAnnotationException, DuplicatedAnnotationException, InvalidAnnotationException
+    {
+        List<Member> own = declared(type);
+        List<Member> members = new ArrayList<Member>();
+        Class parent = type.getSuperclass();
+
+        if(parent != null && parent != Object.class)
+        {
+            for(Member inherited : of(parent).members)
+                if(!overridden(inherited, own)) members.add(inherited);
+        }
+
+        members.addAll(own);
+
+        return new ClassPlan(type, members.toArray(new Member[members.size()]));
+    }
+
+    private static boolean overridden(Member inherited, List<Member> own)
+    {
+        // -- > only methods can be overridden, and private ones can't
+        if(inherited.method == null || Modifier.isPrivate(inherited.method.getModifiers())) return false;
+
+        for(Member m : own)
+        {
+            if(m.method != null
+                    && m.method.getName().equals(inherited.method.getName())
+                    && Arrays.equals(m.method.getParameterTypes(), inherited.method.getParameterTypes()))
+                return true;
+        }
+
+        return false;
+    }
+
+    /** @return the members declared by the class itself */
+    private static List<Member> declared(Class type)
+            throws MissingAnnotationException, DuplicatedAnnotationException, InvalidAnnotationException
+    {
+        PlanIndex.Entry[] entries = PlanIndex.lookup(type);
+
+        if(entries != null)
+        {
+            List<Member> members = indexed(type, entries);
+            if(members != null) return members;
+        }
+
+        List<Member> members = new ArrayList<Member>();
+
+        // Fields
+        for(Field f : type.getDeclaredFields())
+        {
+            JSON.Value ann = f.getAnnotation(JSON.Value.class);
+            JSON.ValueCollection collection_ann = f.getAnnotation(JSON.ValueCollection.class);
+            JSON.ValueMap map_ann = f.getAnnotation(JSON.ValueMap.class);
+            int count = count(ann, collection_ann, map_ann);
+
+            // -- > if this field isn't annotated, move on
+            if(count == 0) continue;
+
+            // -- > if this field is annotated twice, throw Exception
+            if(count > 1)
+                throw new DuplicatedAnnotationException(type, f, null);
+
+            f.setAccessible(true);
+            members.add(new Member(type, f, null, ann, collection_ann, map_ann,
+                                   f.getAnnotation(JSON.ParseAs.class), f.getAnnotation(JSON.Convert.class)));
+        }
+
+        // Transformations
+        for(Method m : type.getDeclaredMethods())
+        {
+            // -- > if this method isn't annotated, move on
+            if(m.getAnnotation(JSON.TransformationMethod.class) == null) continue;
+
+            JSON.Value ann = m.getAnnotation(JSON.Value.class);
+            JSON.ValueCollection collection_ann = m.getAnnotation(JSON.ValueCollection.class);
+            JSON.ValueMap map_ann = m.getAnnotation(JSON.ValueMap.class);
+            int count = count(ann, collection_ann, map_ann);
+
+            // -- > if this method hasn't more annotations, throw exception
+            if(count == 0)
+                throw new MissingAnnotationException(JSON.Value.class, type, null, m);
+
+            // -- > if this method is annotated twice, throw Exception
+            if(count > 1)
+                throw new DuplicatedAnnotationException(type, null, m);
+
+            m.setAccessible(true);
+            members.add(new Member(type, null, m, ann, collection_ann, map_ann,
+                                   m.getAnnotation(JSON.ParseAs.class), m.getAnnotation(JSON.Convert.class)));
+        }
+
+        return members;
+    }
+
+    /**
+     * @return the indexed members of the class, or null if the index doesn't match it
+     * (a member or class it names is gone), in which case the class should be scanned
+     */
+    private static List<Member> indexed(Class type, PlanIndex.Entry[] entries)
+            throws MissingAnnotationException, InvalidAnnotationException
+    {
+        List<Member> members = new ArrayList<Member>(entries.length);
+
+        try
+        {
+            for(PlanIndex.Entry e : entries)
+            {
+                Field f = null;
+                Method m = null;
+
+                if(e.parameters == null)
+                {
+                    f = type.getDeclaredField(e.name);
+                    f.setAccessible(true);
+                }
+                else
+                {
+                    m = type.getDeclaredMethod(e.name, parameterTypes(type, e.parameters));
+                    m.setAccessible(true);
+                }
+
+                members.add(new Member(type, f, m, e));
+            }
+        }
+        catch (NoSuchFieldException e)
+        {
+            return null;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+
+        return members;
+    }
+
+    /**
+     * @return the classes named by the parameter type names of an indexed method
+     * (as by {@link Class#getTypeName()}), loaded as the class declaring it would
+     */
+    private static Class[] parameterTypes(Class type, String[] parameters) throws ClassNotFoundException
+    {
+        Class[] types = new Class[parameters.length];
+
+        for(int i = 0; i < parameters.length; i++)
+        {
+            String name = parameters[i];
+            int dimensions = 0;
+
+            while(name.endsWith("[]"))
+            {
+                name = name.substring(0, name.length() - 2);
+                dimensions++;
+            }
+
+            Class c = PRIMITIVES.get(name);
+            if(c == null) c = Class.forName(name, false, type.getClassLoader());
+
+            for(int d = 0; d < dimensions; d++)
+                c = Array.newInstance(c, 0).getClass();
+
+            types[i] = c;
+        }
+
+        return types;
+    }
+
+    private static int count(Annotation... annotations)
+    {
+        int count = 0;
+
+        for(Annotation a : annotations)
+            if(a != null) count++;
+
+        return count;
+    }
+
+    enum Kind
+    { VALUE, COLLECTION, MAP }
+
+    /** An annotated field or transformation method */
+    static final class Member
+    {
+        final Class owner;
+        final Field field;
+        final Method method;
+
+        final String key;
+        final JSON.Type type;
+        final Kind kind;
+        final boolean compact;
+        final Class parseAs;
+        final Constraints constraints;
+        final Converter converter;
+
+        Member(Class owner, Field f, Method m, JSON.Value ann, JSON.ValueCollection c_ann, JSON.ValueMap m_ann,
+               JSON.ParseAs parse_as, JSON.Convert convert)
+                throws MissingAnnotationException, InvalidAnnotationException
+        {
+            this.owner = owner;
+            this.field = f;
+            this.method = m;
+
+            if(ann != null)
+            {
+                this.kind = Kind.VALUE;
+                this.key = ann.key();
+                this.type = ann.type();
+                this.compact = false;
+                this.constraints = compile(ann, f, m);
+            }
+            else if(c_ann != null)
+            {
+                this.kind = Kind.COLLECTION;
+                this.key = c_ann.key();
+                this.type = c_ann.of();
+                this.compact = false;
+                this.constraints = compile(c_ann, f, m);
+            }
+            else
+            {
+                this.kind = Kind.MAP;
+                this.key = m_ann.key();
+                this.type = m_ann.of();
+                this.compact = m_ann.compact();
+                this.constraints = null;
+            }
+
+            if(type == JSON.Type.OBJ && parse_as == null)
+                throw new MissingAnnotationException(JSON.ParseAs.class, owner, f, m);
+
+            this.parseAs = parse_as != null ? parse_as.value() : null;
+
+            if(type == JSON.Type.CUSTOM && convert == null)
+                throw new MissingAnnotationException(JSON.Convert.class, owner, f, m);
+
+            // -- > a converter for any other type would never be used
+            if(type != JSON.Type.CUSTOM && convert != null)
+                throw new InvalidAnnotationException(convert, owner, f, m);
+
+            this.converter = type == JSON.Type.CUSTOM ? instantiate(convert.value(), f, m) : null;
+        }
+
+        /**
+         * Builds the member from its {@link PlanIndex} entry, rather than from its annotations
+         * @throws ClassNotFoundException if a class named by the entry can't be loaded
+         */
+        Member(Class owner, Field f, Method m, PlanIndex.Entry e)
+                throws MissingAnnotationException, InvalidAnnotationException, ClassNotFoundException
+        {
+            this.owner = owner;
+            this.field = f;
+            this.method = m;
+
+            this.kind = e.kind;
+            this.key = e.key;
+            this.type = e.type;
+            this.compact = e.compact;
+
+            try
+            {
+                this.constraints = Constraints.of(e.required, e.min, e.max, e.maxLength, e.pattern,
+                                                  e.minSize, e.maxSize);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                Class<? extends Annotation> a = kind == Kind.VALUE ? JSON.Value.class : JSON.ValueCollection.class;
+                throw new InvalidAnnotationException(annotation(f, m, a), owner, f, m);
+            }
+
+            if(type == JSON.Type.OBJ && e.parseAs == null)
+                throw new MissingAnnotationException(JSON.ParseAs.class, owner, f, m);
+
+            this.parseAs = e.parseAs != null ? Class.forName(e.parseAs, false, owner.getClassLoader()) : null;
+
+            if(type == JSON.Type.CUSTOM && e.converter == null)
+                throw new MissingAnnotationException(JSON.Convert.class, owner, f, m);
+
+            if(type != JSON.Type.CUSTOM && e.converter != null)
+                throw new InvalidAnnotationException(annotation(f, m, JSON.Convert.class), owner, f, m);
+
+            this.converter = type == JSON.Type.CUSTOM
+                    ? instantiate(Class.forName(e.converter, false, owner.getClassLoader()), f, m)
+                    : null;
+        }
+
+        /**
+         * Creates the member's converter, passing it the target class if it takes one
+         */
+        private Converter instantiate(Class<?> converter, Field f, Method m) throws InvalidAnnotationException
+        {
+            Class target = parseAs;
+
+            if(target == null && kind == Kind.VALUE)
+            {
+                Class[] parameters = f != null ? new Class[] { f.getType() } : m.getParameterTypes();
+                if(parameters.length == 1) target = parameters[0];
+            }
+
+            try
+            {
+                if(target != null)
+                {
+                    try
+                    {
+                        return (Converter) converter.getConstructor(Class.class).newInstance(target);
+                    }
+                    catch (NoSuchMethodException e)
+                    {
+                        // -- > then it should have an empty one
+                    }
+                }
+
+                return (Converter) converter.getConstructor().newInstance();
+            }
+            catch (Exception e)
+            {
+                throw new InvalidAnnotationException(annotation(f, m, JSON.Convert.class), owner, f, m);
+            }
+        }
+
+        private static Annotation annotation(Field f, Method m, Class<? extends Annotation> a)
+        {
+            return f != null ? f.getAnnotation(a) : m.getAnnotation(a);
+        }
+
+        private Constraints compile(Annotation a, Field f, Method m) throws InvalidAnnotationException
+        {
+            try
+            {
+                return a instanceof JSON.Value
+                        ? Constraints.of((JSON.Value) a)
+                        : Constraints.of((JSON.ValueCollection) a);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new InvalidAnnotationException(a, owner, f, m);
+            }
+        }
+
+        /**
+         * @return what the member currently holds (always null for transformation methods)
+         */
+        Object read(Object target) throws InvalidMemberException
+        {
+            if(field == null) return null;
+
+            try
+            {
+                return field.get(target);
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new InvalidMemberException(owner, field, null);
+            }
+        }
+
+        void assign(Object target, Object value) throws InvalidMemberException, UnparsableTypeException
+        {
+            if(field != null)
+            {
+                try
+                {
+                    field.set(target, value);
+                }
+                catch (IllegalAccessException e)
+                {
+                    throw new InvalidMemberException(owner, field, null);
+                }
+            }
+            else
+            {
+                try
+                {
+                    method.invoke(target, value);
+                }
+                catch (IllegalAccessException e)
+                {
+                    throw new UnparsableTypeException(owner, UnparsableTypeException.UnparsableReason.NOT_ACCESSIBLE);
+                }
+                catch (InvocationTargetException e)
+                {
+                    throw new UnparsableTypeException(owner, UnparsableTypeException.UnparsableReason.NO_EMPTY_CONSTRUCTOR);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package me.tiagovalente.jsonannotation;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A Map from String keys, using open addressing (linear probing) instead of
+ * one entry object per mapping. Numeric values (INT, LONG, DOUBLE) are kept
+ * in a primitive array and only boxed when read through the Map interface;
+ * {@link #getLong(String, long)} and {@link #getDouble(String, double)} read them unboxed.
+ *
+ * Null keys are not allowed, nor are null values in a numeric map.
+ * Entries may be removed (and their values set) through the iterators of its views,
+ * but the map must not be otherwise modified while iterating.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class CompactMap<V> extends AbstractMap<String, V>
+{
+    private static final int MIN_CAPACITY = 8;
+
+    private final JSON.Type type;
+    private String[] keys;
+    private Object[] values;
+    private long[] numbers;
+    private int size;
+
+    /**
+     * @param type - The type of the values; INT, LONG and DOUBLE are stored unboxed
+     * @param expectedSize - How many mappings the map should hold without growing
+     */
+    public CompactMap(JSON.Type type, int expectedSize)
+    {
+        this.type = type;
+        allocate(capacityFor(expectedSize));
+    }
+
+    private boolean isNumeric()
+    {
+        return type == JSON.Type.INT || type == JSON.Type.LONG || type == JSON.Type.DOUBLE;
+    }
+
+    private static int capacityFor(int expectedSize)
+    {
+        int capacity = MIN_CAPACITY;
+
+        // -- > keep the load factor under 1/2, probe sequences stay short
+        while(capacity < expectedSize * 2)
+            capacity <<= 1;
+
+        return capacity;
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new String[capacity];
+
+        if(isNumeric())
+            numbers = new long[capacity];
+        else
+            values = new Object[capacity];
+    }
+
+    private static int hash(Object key)
+    {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** @return the slot holding the key, or the empty slot where it would be */
+    private int slot(Object key)
+    {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+
+        while(keys[i] != null && !keys[i].equals(key))
+            i = (i + 1) & mask;
+
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V read(int i)
+    {
+        if(!isNumeric())
+            return (V) values[i];
+
+        switch(type)
+        {
+            case INT:
+                return (V) Integer.valueOf((int) numbers[i]);
+            case LONG:
+                return (V) Long.valueOf(numbers[i]);
+            default:
+                return (V) Double.valueOf(Double.longBitsToDouble(numbers[i]));
+        }
+    }
+
+    private void write(int i, Object value)
+    {
+        if(!isNumeric())
+        {
+            values[i] = value;
+            return;
+        }
+
+        if(value == null)
+            throw new NullPointerException("Numeric CompactMaps can't hold null values");
+
+        numbers[i] = type == JSON.Type.DOUBLE
+                ? Double.doubleToRawLongBits(((Number) value).doubleValue())
+                : ((Number) value).longValue();
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return key != null && keys[slot(key)] != null;
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        if(key == null) return null;
+
+        int i = slot(key);
+        return keys[i] != null ? read(i) : null;
+    }
+
+    /**
+     * @return the value for the key, unboxed, or 'missing' if there is none
+     */
+    public long getLong(String key, long missing)
+    {
+        if(!isNumeric()) throw new IllegalStateException("Not a numeric CompactMap");
+
+        int i = slot(key);
+
+        if(keys[i] == null) return missing;
+        return type == JSON.Type.DOUBLE ? (long) Double.longBitsToDouble(numbers[i]) : numbers[i];
+    }
+
+    /**
+     * @return the value for the key, unboxed, or 'missing' if there is none
+     */
+    public double getDouble(String key, double missing)
+    {
+        if(!isNumeric()) throw new IllegalStateException("Not a numeric CompactMap");
+
+        int i = slot(key);
+
+        if(keys[i] == null) return missing;
+        return type == JSON.Type.DOUBLE ? Double.longBitsToDouble(numbers[i]) : numbers[i];
+    }
+
+    @Override
+    public V put(String key, V value)
+    {
+        if(key == null) throw new NullPointerException("CompactMap keys can't be null");
+
+        int i = slot(key);
+
+        if(keys[i] != null)
+        {
+            V previous = read(i);
+            write(i, value);
+            return previous;
+        }
+
+        if((size + 1) * 2 > keys.length)
+        {
+            grow();
+            i = slot(key);
+        }
+
+        write(i, value);
+        keys[i] = key;
+        size++;
+
+        return null;
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        if(key == null) return null;
+
+        int i = slot(key);
+
+        if(keys[i] == null) return null;
+
+        V previous = read(i);
+        delete(i, null);
+
+        return previous;
+    }
+
+    /**
+     * Empties the slot, shifting back the entries that probed past it.
+     * An iterator removing the entry is told about the entries shifted
+     * from slots it has yet to visit to slots it has already visited.
+     */
+    private void delete(int i, EntryIterator iterator)
+    {
+        int mask = keys.length - 1;
+        int hole = i;
+
+        for(int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask)
+        {
+            int home = hash(keys[j]) & mask;
+
+            if(((j - home) & mask) >= ((j - hole) & mask))
+            {
+                if(iterator != null) iterator.shifted(j, hole);
+
+                move(j, hole);
+                hole = j;
+            }
+        }
+
+        keys[hole] = null;
+        if(values != null) values[hole] = null;
+        size--;
+    }
+
+    private void move(int from, int to)
+    {
+        keys[to] = keys[from];
+
+        if(values != null)
+            values[to] = values[from];
+        else
+            numbers[to] = numbers[from];
+    }
+
+    @Override
+    public void clear()
+    {
+        // -- > keep the arrays, so that a cleared map can be refilled without allocating
+        Arrays.fill(keys, null);
+        if(values != null) Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void grow()
+    {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        long[] oldNumbers = numbers;
+
+        allocate(oldKeys.length * 2);
+
+        for(int j = 0; j < oldKeys.length; j++)
+        {
+            if(oldKeys[j] == null) continue;
+
+            int i = slot(oldKeys[j]);
+            keys[i] = oldKeys[j];
+
+            if(oldValues != null)
+                values[i] = oldValues[j];
+            else
+                numbers[i] = oldNumbers[j];
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String, V>>()
+        {
+            @Override
+            public Iterator<Map.Entry<String, V>> iterator()
+            {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+
+            @Override
+            public void clear()
+            {
+                CompactMap.this.clear();
+            }
+        };
+    }
+
+    /** An entry whose value is written through to the map */
+    private class WritableEntry extends AbstractMap.SimpleEntry<String, V>
+    {
+        private static final long serialVersionUID = 1L;
+
+        WritableEntry(String key, V value)
+        {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value)
+        {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Visits the slots from the last one down. Removing an entry only shifts back
+     * entries from later slots, which have been visited already, except for those that
+     * wrapped around from the first slots: these are kept aside and visited at the end.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<String, V>>
+    {
+        /** The slots from this one up have been visited */
+        private int visited = keys.length;
+        private int next = advance(keys.length - 1);
+        /** The keys shifted from slots yet to be visited to slots already visited */
+        private List<String> wrapped;
+        private String last;
+        private boolean lastWrapped;
+
+        private int advance(int from)
+        {
+            while(from >= 0 && keys[from] == null)
+                from--;
+
+            return from;
+        }
+
+        private void shifted(int from, int to)
+        {
+            if(from < visited && to >= visited)
+            {
+                if(wrapped == null) wrapped = new ArrayList<String>();
+                wrapped.add(keys[from]);
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next >= 0 || (wrapped != null && !wrapped.isEmpty());
+        }
+
+        @Override
+        public Map.Entry<String, V> next()
+        {
+            if(next >= 0)
+            {
+                int i = next;
+
+                visited = i;
+                next = advance(i - 1);
+                last = keys[i];
+                lastWrapped = false;
+
+                return new WritableEntry(last, read(i));
+            }
+
+            if(wrapped == null || wrapped.isEmpty()) throw new NoSuchElementException();
+
+            last = wrapped.remove(wrapped.size() - 1);
+            lastWrapped = true;
+
+            return new WritableEntry(last, get(last));
+        }
+
+        @Override
+        public void remove()
+        {
+            if(last == null) throw new IllegalStateException();
+
+            if(lastWrapped)
+            {
+                // -- > every slot was visited already, shifting doesn't matter anymore
+                CompactMap.this.remove(last);
+            }
+            else
+            {
+                delete(visited, this);
+                next = advance(visited - 1);
+            }
+
+            last = null;
+        }
+    }
+}
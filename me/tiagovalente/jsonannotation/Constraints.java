@@ -0,0 +1,108 @@
+package me.tiagovalente.jsonannotation;
+
+import java.util.regex.Pattern;
+
+/**
+ * The validation constraints of an annotated member, compiled once into its {@link ClassPlan}.
+ * Members without any constraint have none of these, and cost nothing to check.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+final class Constraints
+{
+    final boolean required;
+    final double min;
+    final double max;
+    final int maxLength;
+    final Pattern pattern;
+    final int minSize;
+    final int maxSize;
+
+    private Constraints(boolean required, double min, double max, int maxLength, String pattern,
+                        int minSize, int maxSize)
+    {
+        this.required = required;
+        this.min = min;
+        this.max = max;
+        this.maxLength = maxLength;
+        this.pattern = pattern.length() == 0 ? null : Pattern.compile(pattern);
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the constraints of the annotation, or null if it has none
+     * @throws IllegalArgumentException if they are inconsistent, or the pattern doesn't compile
+     */
+    static Constraints of(JSON.Value ann)
+    {
+        return of(ann.required(), ann.min(), ann.max(), ann.maxLength(), ann.pattern(), 0, Integer.MAX_VALUE);
+    }
+
+    /** @see #of(JSON.Value) */
+    static Constraints of(JSON.ValueCollection ann)
+    {
+        return of(ann.required(), ann.min(), ann.max(), ann.maxLength(), ann.pattern(),
+                  ann.minSize(), ann.maxSize());
+    }
+
+    /**
+     * @return the given constraints, or null if all of them are the annotations' defaults
+     * @see #of(JSON.Value)
+     */
+    static Constraints of(boolean required, double min, double max, int maxLength, String pattern,
+                          int minSize, int maxSize)
+    {
+        if(!required && min == Double.NEGATIVE_INFINITY && max == Double.POSITIVE_INFINITY
+                && maxLength == Integer.MAX_VALUE && pattern.length() == 0
+                && minSize == 0 && maxSize == Integer.MAX_VALUE)
+            return null;
+
+        if(min > max || maxLength < 0 || minSize < 0 || minSize > maxSize)
+            throw new IllegalArgumentException("Inconsistent constraints");
+
+        return new Constraints(required, min, max, maxLength, pattern, minSize, maxSize);
+    }
+
+    /**
+     * @return why the (non-null) value breaks the constraints, or null if it doesn't
+     */
+    String check(Object value)
+    {
+        if(value instanceof Number)
+        {
+            double d = ((Number) value).doubleValue();
+
+            if(d < min) return String.format("must be at least %s", format(min));
+            if(d > max) return String.format("must be at most %s", format(max));
+        }
+        else if(value instanceof String)
+        {
+            String str = (String) value;
+
+            if(str.length() > maxLength)
+                return String.format("must be at most %d characters long", maxLength);
+            if(pattern != null && !pattern.matcher(str).matches())
+                return String.format("must match %s", pattern.pattern());
+        }
+
+        return null;
+    }
+
+    /**
+     * @return why a collection of the given size breaks the constraints, or null if it doesn't
+     */
+    String checkSize(int size)
+    {
+        if(size < minSize) return String.format("must have at least %d members", minSize);
+        if(size > maxSize) return String.format("must have at most %d members", maxSize);
+
+        return null;
+    }
+
+    private static String format(double d)
+    {
+        return d == Math.rint(d) && !Double.isInfinite(d) ? Long.toString((long) d) : Double.toString(d);
+    }
+}
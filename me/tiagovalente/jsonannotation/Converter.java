@@ -0,0 +1,19 @@
+package me.tiagovalente.jsonannotation;
+
+/**
+ * Converts a JSON value into a CUSTOM type (see {@link JSON.Convert}).
+ * Instances are created once per annotated member and shared
+ * between parses, so they must be thread-safe.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public interface Converter<T>
+{
+    /**
+     * @param value - The value as held by org.json: a String, Number, Boolean,
+     *  JSONObject or JSONArray (never null)
+     * @return the converted value, or null if the value can't be converted
+     */
+    public T convert(Object value);
+}
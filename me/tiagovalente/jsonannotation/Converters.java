@@ -0,0 +1,78 @@
+package me.tiagovalente.jsonannotation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The built-in {@link Converter}s
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public abstract class Converters
+{
+    /**
+     * Converts a String into the enum constant with that name.
+     * The names are looked up in a table built once, when the converter is created.
+     */
+    public static class EnumConverter<E extends Enum<E>> implements Converter<E>
+    {
+        private final Map<String, E> constants;
+
+        public EnumConverter(Class<E> enumType)
+        {
+            E[] values = enumType.getEnumConstants();
+
+            if(values == null)
+                throw new IllegalArgumentException(String.format("%s is not an enum", enumType.getName()));
+
+            constants = new HashMap<String, E>((int) (values.length / 0.75f) + 1);
+
+            for(E e : values)
+                constants.put(e.name(), e);
+        }
+
+        @Override
+        public E convert(Object value)
+        {
+            return value instanceof String ? constants.get(value) : null;
+        }
+    }
+
+    /** Converts a String into a UUID */
+    public static class UUIDConverter implements Converter<UUID>
+    {
+        @Override
+        public UUID convert(Object value)
+        {
+            return value instanceof String ? UUID.fromString((String) value) : null;
+        }
+    }
+
+    /**
+     * Converts a number, or a String holding one, into a BigDecimal.
+     * Numbers already held as BigDecimal (or BigInteger) by org.json are used as they are.
+     */
+    public static class BigDecimalConverter implements Converter<BigDecimal>
+    {
+        @Override
+        public BigDecimal convert(Object value)
+        {
+            if(value instanceof BigDecimal)
+                return (BigDecimal) value;
+            if(value instanceof BigInteger)
+                return new BigDecimal((BigInteger) value);
+            if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+                return BigDecimal.valueOf(((Number) value).longValue());
+            if(value instanceof Number)
+                return BigDecimal.valueOf(((Number) value).doubleValue());
+            if(value instanceof String)
+                return new BigDecimal((String) value);
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package me.tiagovalente.jsonannotation;
+
+import me.tiagovalente.jsonannotation.JSONAnnotationParser.JSONParserException;
+import me.tiagovalente.jsonannotation.JSONAnnotationParser.UnparsableTypeException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+
+/**
+ * A per-thread pool of instances of a parsable type, refilled with
+ * {@link JSONAnnotationParser#parseInto(JSONObject, JSONParsable, ParseLimits)}.
+ * Once each thread has as many instances as it keeps in use at once,
+ * parsing no longer creates new objects (nor, mostly, new nested objects and collections).
+ * Each thread also keeps the state of its parses (the binding stack and its frames).
+ *
+ * Instances must be released by the thread that acquired them,
+ * and must not be used after being released.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class InstancePool<T extends JSONParsable>
+{
+    private final Class<T> type;
+    private final int maxPerThread;
+    private final ParseLimits limits;
+    private final ThreadLocal<ArrayDeque<T>> free = new ThreadLocal<ArrayDeque<T>>()
+    {
+        @Override
+        protected ArrayDeque<T> initialValue()
+        {
+            return new ArrayDeque<T>();
+        }
+    };
+    private final ThreadLocal<JSONAnnotationParser.Binding> bindings = new ThreadLocal<JSONAnnotationParser.Binding>()
+    {
+        @Override
+        protected JSONAnnotationParser.Binding initialValue()
+        {
+            return new JSONAnnotationParser.Binding(limits, true);
+        }
+    };
+
+    /**
+     * @param type - The class of the pooled instances
+     * @param maxPerThread - How many released instances each thread keeps
+     */
+    public InstancePool(Class<T> type, int maxPerThread)
+    {
+        this(type, maxPerThread, ParseLimits.NONE);
+    }
+
+    /**
+     * @param limits - The limits applied by {@link #parse(JSONObject)}
+     */
+    public InstancePool(Class<T> type, int maxPerThread, ParseLimits limits)
+    {
+        if(maxPerThread <= 0) throw new IllegalArgumentException("The pool must keep at least one instance");
+
+        this.type = type;
+        this.maxPerThread = maxPerThread;
+        this.limits = limits;
+    }
+
+    /**
+     * @return a released instance, if this thread has one; a new one otherwise
+     */
+    public T acquire() throws UnparsableTypeException
+    {
+        T instance = free.get().poll();
+        return instance != null ? instance : type.cast(JSONAnnotationParser.instantiate(type));
+    }
+
+    /**
+     * Gives an instance back to this thread's pool
+     */
+    public void release(T instance)
+    {
+        ArrayDeque<T> instances = free.get();
+        if(instances.size() < maxPerThread) instances.push(instance);
+    }
+
+    /**
+     * Parses the JSONObject into a pooled instance, which should be released when no longer needed.
+     * If parsing fails, the instance goes back to the pool.
+     */
+    public T parse(JSONObject obj) throws JSONParserException
+    {
+        T instance = acquire();
+
+        try
+        {
+            return JSONAnnotationParser.parseInto(obj, instance, bindings.get());
+        }
+        catch (JSONParserException e)
+        {
+            release(instance);
+            throw e;
+        }
+    }
+}
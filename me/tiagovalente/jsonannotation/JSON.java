@@ -22,6 +22,13 @@ public class JSON
      * which is expected to be of the type 'type'.
      *
      * An OBJ type requires one additional annotation (ParseAs)
+     * A CUSTOM type requires one additional annotation (Convert)
+     *
+     * The optional constraints are checked while parsing; a parse that breaks
+     * any of them fails with a ValidationException listing every violation.
+     *  - required: the value must be present (and not null)
+     *  - min, max: bounds for INT, LONG and DOUBLE values
+     *  - maxLength, pattern: the maximum length of, and a regular expression to be matched by, STRING values
      */
     @Documented
     @Retention(RetentionPolicy.RUNTIME)
@@ -30,6 +37,12 @@ public class JSON
     {
         public String key();
         public Type type();
+
+        public boolean required() default false;
+        public double min() default Double.NEGATIVE_INFINITY;
+        public double max() default Double.POSITIVE_INFINITY;
+        public int maxLength() default Integer.MAX_VALUE;
+        public String pattern() default "";
     }
 
     /**
@@ -38,8 +51,14 @@ public class JSON
      * which is a collection of members of the type 'type'.
      *
      * If the members are of type OBJ, they require one additional annotation (ParseAs)
+     * If the members are of type CUSTOM, they require one additional annotation (Convert)
      *
      * (CAVEAT: in order to deal with Collection of Collection, an intermediary object must be used)
+     *
+     * The optional constraints are checked while parsing, as for {@link Value}:
+     *  - required: the collection must be present
+     *  - minSize, maxSize: bounds for the number of members
+     *  - min, max, maxLength, pattern: as for {@link Value}, checked on each member
      */
     @Documented
     @Retention(RetentionPolicy.RUNTIME)
@@ -48,10 +67,42 @@ public class JSON
     {
         public String key();
         public Type of();
+
+        public boolean required() default false;
+        public int minSize() default 0;
+        public int maxSize() default Integer.MAX_VALUE;
+        public double min() default Double.NEGATIVE_INFINITY;
+        public double max() default Double.POSITIVE_INFINITY;
+        public int maxLength() default Integer.MAX_VALUE;
+        public String pattern() default "";
+    }
+
+    /**
+     * Associates the field or parameter to a JSON member.
+     * This associates it with the JSON object contained in the JSON key 'key',
+     * whose keys are arbitrary and whose values are of the type 'of'.
+     * The result is a Map from each key to its value.
+     *
+     * If the values are of type OBJ, they require one additional annotation (ParseAs)
+     * If the values are of type CUSTOM, they require one additional annotation (Convert)
+     *
+     * If 'compact' is set, the values are stored in a {@link CompactMap}
+     * (open addressing, with primitive storage for INT, LONG and DOUBLE values),
+     * which is better suited to large lookup tables.
+     */
+    @Documented
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    public @interface ValueMap
+    {
+        public String key();
+        public Type of();
+        public boolean compact() default false;
     }
 
     /**
      * Use to describe how to parse an OBJ JSON type
+     * (or, for a CUSTOM one, the class its converter should produce)
      */
     @Documented
     @Retention(RetentionPolicy.RUNTIME)
@@ -61,6 +112,23 @@ public class JSON
         public Class value();
     }
 
+    /**
+     * Use to describe how to convert a CUSTOM JSON type (it is invalid on any other type).
+     * The converter is instantiated once per annotated member, either with
+     * the target class (if it has such a constructor) or with its empty constructor.
+     * The target class is the one given by ParseAs; for a Value, it defaults to
+     * the type of the field (or of the transformation method's parameter).
+     *
+     * @see Converters for the built-in converters
+     */
+    @Documented
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    public @interface Convert
+    {
+        public Class<? extends Converter> value();
+    }
+
     @Documented
     @Retention(RetentionPolicy.RUNTIME)
     @Target(ElementType.METHOD)
@@ -72,7 +140,17 @@ public class JSON
     public @interface TransformationMethod
     {}
 
+    /**
+     * Marks a parsable class as never modified once parsed (nor are the objects it holds),
+     * so that a single parsed instance can be shared, e.g. by the {@link ParseCache}
+     */
+    @Documented
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    public @interface Immutable
+    {}
+
     /** Recognizable JSON Types **/
     public enum Type
-    { INT, LONG, STRING, BOOL, DOUBLE, DATE, OBJ }
+    { INT, LONG, STRING, BOOL, DOUBLE, DATE, OBJ, CUSTOM }
 }
@@ -1,11 +1,17 @@
 package me.tiagovalente.jsonannotation;
 
+import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -22,6 +28,10 @@ import org.json.JSONObject;
  */
 public abstract class JSONAnnotationParser
 {
+    /**
+     * Parses the given JSONObject as an instance of objType, without any {@link ParseLimits}
+     * @throws InvalidMemberException also when validation fails, as a {@link ValidationException}
+     */
     public static <T extends JSONParsable> T parse(JSONObject obj, Class<T> objType)
             throws InvalidAnnotationException,
                    UnparsableTypeException,
@@ -29,12 +39,110 @@ public abstract class JSONAnnotationParser
                    DuplicatedAnnotationException,
                    InvalidMemberException
     {
-        T result;
-        boolean acessible;
+        try
+        {
+            return parse(obj, objType, ParseLimits.NONE);
+        }
+        catch (LimitExceededException e)
+        {
+            // -- > can't happen, there are no limits to exceed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses the given JSONObject as an instance of objType,
+     * aborting as soon as any of the given limits is exceeded.
+     * Nesting is handled with an explicit stack, so deep input can't overflow the thread's stack.
+     *
+     * Validation constraints (see {@link JSON.Value}) are checked as each value is bound;
+     * if any is broken, a ValidationException listing all of them is thrown once binding is done.
+     */
+    public static <T extends JSONParsable> T parse(JSONObject obj, Class<T> objType, ParseLimits limits)
+            throws InvalidAnnotationException,
+                   UnparsableTypeException,
+                   MissingAnnotationException,
+                   DuplicatedAnnotationException,
+                   InvalidMemberException,
+                   LimitExceededException,
+                   ValidationException
+    {
+        return objType.cast(new Binding(limits, false).run(obj, objType, null));
+    }
+
+    /**
+     * Parses the given JSONObject into an existing instance, without any {@link ParseLimits}
+     * @see #parseInto(JSONObject, JSONParsable, ParseLimits)
+     */
+    public static <T extends JSONParsable> T parseInto(JSONObject obj, T reuse)
+            throws InvalidAnnotationException,
+                   UnparsableTypeException,
+                   MissingAnnotationException,
+                   DuplicatedAnnotationException,
+                   InvalidMemberException,
+                   ValidationException
+    {
+        try
+        {
+            return parseInto(obj, reuse, ParseLimits.NONE);
+        }
+        catch (LimitExceededException e)
+        {
+            // -- > can't happen, there are no limits to exceed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses the given JSONObject into an existing instance, instead of a new one.
+     * Every annotated member is overwritten, and what it already holds is reused when possible:
+     * nested objects (in fields) of the expected class are refilled, and collections and maps
+     * are cleared and refilled, if they're known to be mutable (ArrayList, LinkedList, HashMap,
+     * LinkedHashMap or, for compact maps, CompactMap); any other one is replaced. The members of
+     * an ArrayList of objects are refilled in place too, so a LinkedList of objects (as created by
+     * {@link #parse(JSONObject, Class)}) is replaced by one. Collections created here are ArrayLists,
+     * so the next call can reuse them.
+     *
+     * If parsing fails, the instance may be left partially refilled.
+     * @return the given instance
+     */
+    public static <T extends JSONParsable> T parseInto(JSONObject obj, T reuse, ParseLimits limits)
+            throws InvalidAnnotationException,
+                   UnparsableTypeException,
+                   MissingAnnotationException,
+                   DuplicatedAnnotationException,
+                   InvalidMemberException,
+                   LimitExceededException,
+                   ValidationException
+    {
+        new Binding(limits, true).run(obj, reuse.getClass(), reuse);
+        return reuse;
+    }
+
+    /**
+     * Parses into an existing instance with a binding kept by the caller, e.g. one per thread
+     * (or with a new one, if that binding is already running on this thread)
+     */
+    static <T extends JSONParsable> T parseInto(JSONObject obj, T reuse, Binding binding)
+            throws InvalidAnnotationException,
+                   UnparsableTypeException,
+                   MissingAnnotationException,
+                   DuplicatedAnnotationException,
+                   InvalidMemberException,
+                   LimitExceededException,
+                   ValidationException
+    {
+        if(binding.isRunning()) binding = new Binding(binding.limits, true);
+
+        binding.run(obj, reuse.getClass(), reuse);
+        return reuse;
+    }
 
+    static Object instantiate(Class objType) throws UnparsableTypeException
+    {
         try
         {
-            result = objType.newInstance();
+            return objType.newInstance();
         }
         catch (InstantiationException e)
         {
@@ -44,193 +152,790 @@ public abstract class JSONAnnotationParser
         {
             throw new UnparsableTypeException(objType, UnparsableTypeException.UnparsableReason.NOT_ACCESSIBLE);
         }
+    }
 
-        // Fields
-        for( Field f : objType.getDeclaredFields() )
+    /**
+     * A parse. Each nested object (or collection or map of objects) being bound
+     * is a Frame in an explicit stack; the frame on top binds members until
+     * it finds a nested one, which is pushed and bound before carrying on.
+     *
+     * Finished frames are kept for the next nested values, so a binding that is run
+     * again (one per thread, see {@link InstancePool}) stops allocating frames at all.
+     * A binding is not thread-safe, nor re-entrant (see {@link #isRunning()}).
+     */
+    static final class Binding
+    {
+        private final ParseLimits limits;
+        private final boolean reuse;
+        private final ArrayDeque<Frame> stack = new ArrayDeque<Frame>();
+        private final ArrayDeque<ObjectFrame> objectFrames = new ArrayDeque<ObjectFrame>();
+        private final ArrayDeque<CollectionFrame> collectionFrames = new ArrayDeque<CollectionFrame>();
+        private final ArrayDeque<MapFrame> mapFrames = new ArrayDeque<MapFrame>();
+        private List<ValidationException.Violation> violations;
+        private int elements;
+        private boolean running;
+
+        Binding(ParseLimits limits, boolean reuse)
         {
-            JSON.Value ann = f.getAnnotation(JSON.Value.class);
-            JSON.ValueCollection collection_ann = f.getAnnotation(JSON.ValueCollection.class);
-            JSON.ParseAs parse_as = f.getAnnotation(JSON.ParseAs.class);
-
-            // -- > if this field isn't annotated, move on
-            if(ann == null && collection_ann == null) continue;
+            this.limits = limits;
+            this.reuse = reuse;
+        }
 
-            // -- > if this field is annotated twice, throw Exception
-            if(ann != null && collection_ann != null)
-                throw new DuplicatedAnnotationException(objType, f, null);
+        /** @return whether the binding is being run (e.g. by a converter calling back into the parser) */
+        boolean isRunning()
+        {
+            return running;
+        }
 
-            Object o = process(obj, objType, ann, collection_ann, parse_as);
+        Object run(JSONObject obj, Class objType, Object instance)
+                throws
+                InvalidAnnotationException,
+                UnparsableTypeException,
+                MissingAnnotationException,
+                DuplicatedAnnotationException,
+                InvalidMemberException,
+                LimitExceededException,
+                ValidationException
+        {
+            running = true;
+            elements = 0;
+            violations = null;
 
             try
             {
-            	acessible = f.isAccessible();
-            	// -- > allow me, it's just this one time
-            	f.setAccessible(true);
-                f.set(result, o);
-                f.setAccessible(acessible);
+                stack.push(objectFrame(obj, objType, instance, 1, null, -1));
+
+                while(true)
+                {
+                    Frame top = stack.peek();
+                    Frame child = top.next();
+
+                    if(child != null)
+                    {
+                        stack.push(child);
+                        continue;
+                    }
+
+                    stack.pop();
+                    Object result = top.result();
+                    top.release();
+
+                    if(stack.isEmpty())
+                    {
+                        if(violations != null)
+                            throw new ValidationException(objType, violations);
+
+                        return result;
+                    }
+
+                    stack.peek().childDone(result);
+                }
             }
-            catch (IllegalAccessException e)
+            finally
             {
-                throw new InvalidMemberException(objType, f, null);
+                // -- > a failed parse leaves its frames behind
+                while(!stack.isEmpty())
+                    stack.pop().release();
+
+                violations = null;
+                running = false;
             }
         }
 
-        // Transformations
-        for(Method m : objType.getDeclaredMethods())
+        private ObjectFrame objectFrame(JSONObject json, Class objType, Object instance,
+                                        int depth, String key, int position)
+                throws
+                InvalidAnnotationException,
+                UnparsableTypeException,
+                MissingAnnotationException,
+                DuplicatedAnnotationException
         {
-            JSON.TransformationMethod tm = m.getAnnotation(JSON.TransformationMethod.class);
+            ObjectFrame frame = objectFrames.poll();
+            if(frame == null) frame = new ObjectFrame();
 
-            JSON.ValueCollection collection_ann = m.getAnnotation(JSON.ValueCollection.class);
-            JSON.Value ann = m.getAnnotation(JSON.Value.class);
-            JSON.ParseAs parse_as = m.getAnnotation(JSON.ParseAs.class);
+            frame.init(json, objType, instance, depth, key, position);
+            return frame;
+        }
 
-            // -- > if this field isn't annotated, move on
-            if(tm == null) continue;
+        private CollectionFrame collectionFrame(JSONArray arr, ClassPlan.Member member, List result, int depth)
+        {
+            CollectionFrame frame = collectionFrames.poll();
+            if(frame == null) frame = new CollectionFrame();
 
-            // -- > if this field hasn't more annotations, throw exception
-            if(ann == null && collection_ann == null)
-                throw new MissingAnnotationException(JSON.Value.class, objType, null, m);
+            frame.init(arr, member, result, depth);
+            return frame;
+        }
 
-            // -- > if this field is annotated twice, throw Exception
-            if(ann != null && collection_ann != null)
-                throw new DuplicatedAnnotationException(objType, null, m);
+        private MapFrame mapFrame(JSONObject json, ClassPlan.Member member, Map result, int depth)
+        {
+            MapFrame frame = mapFrames.poll();
+            if(frame == null) frame = new MapFrame();
 
-            Object o = process(obj, objType, ann, collection_ann, parse_as);
+            frame.init(json, member, result, depth);
+            return frame;
+        }
 
-            try
+        private void enter(int depth, Class objType, String key) throws LimitExceededException
+        {
+            if(depth > limits.maxDepth)
+                throw new LimitExceededException(LimitExceededException.Limit.DEPTH, limits.maxDepth, objType, key);
+        }
+
+        private void count(Class objType, String key) throws LimitExceededException
+        {
+            if(++elements > limits.maxElements)
+                throw new LimitExceededException(LimitExceededException.Limit.ELEMENTS, limits.maxElements, objType, key);
+        }
+
+        /**
+         * @return the JSON path of the given member of the current frame
+         *  (and of its member in the given index, if not negative)
+         */
+        private String path(ClassPlan.Member m, int index)
+        {
+            StringBuilder path = new StringBuilder("$");
+            Iterator<Frame> frames = stack.descendingIterator();
+            Frame parent = frames.next();
+
+            while(frames.hasNext())
+            {
+                Frame frame = frames.next();
+
+                if(parent instanceof CollectionFrame)
+                    path.append('[').append(frame.position).append(']');
+                else if(parent instanceof MapFrame)
+                    path.append("[\"").append(frame.key).append("\"]");
+                else
+                    path.append('.').append(frame.key);
+
+                parent = frame;
+            }
+
+            path.append('.').append(m.key);
+            if(index >= 0) path.append('[').append(index).append(']');
+
+            return path.toString();
+        }
+
+        private void violation(ClassPlan.Member m, int index, String reason)
+        {
+            if(violations == null)
+                violations = new LinkedList<ValidationException.Violation>();
+
+            violations.add(new ValidationException.Violation(path(m, index), reason));
+        }
+
+        private void validate(ClassPlan.Member m, Object value, int index)
+        {
+            if(m.constraints == null) return;
+
+            if(value == null)
             {
-            	acessible = m.isAccessible();
-            	// -- > allow me, it's just this one time
-            	m.setAccessible(true);
-                m.invoke(result, o);
-                m.setAccessible(acessible);
+                if(m.constraints.required) violation(m, index, "is required");
+                return;
             }
-            catch (IllegalAccessException e)
+
+            String reason = m.constraints.check(value);
+            if(reason != null) violation(m, index, reason);
+        }
+
+        private void validateCollection(ClassPlan.Member m, JSONObject json)
+        {
+            if(m.constraints != null && m.constraints.required && json.isNull(m.key))
+                violation(m, -1, "is required");
+        }
+
+        private void validateSize(ClassPlan.Member m, List collection)
+        {
+            if(m.constraints == null) return;
+
+            String reason = m.constraints.checkSize(collection.size());
+            if(reason != null) violation(m, -1, reason);
+        }
+
+        private Object primal(JSONObject json, ClassPlan.Member m) throws LimitExceededException
+        {
+            return primal(json, m.key, m);
+        }
+
+        private Object primal(JSONObject json, String key, ClassPlan.Member m) throws LimitExceededException
+        {
+            if(m.type == JSON.Type.CUSTOM)
+                return custom(json.opt(key), m);
+
+            Object value = getPrimalValue(json, key, m.type);
+            checkString(value, m);
+            return value;
+        }
+
+        private Object custom(Object raw, ClassPlan.Member m) throws LimitExceededException
+        {
+            checkString(raw, m);
+            return convert(raw, m);
+        }
+
+        private void checkString(Object value, ClassPlan.Member m) throws LimitExceededException
+        {
+            if(value instanceof String && ((String) value).length() > limits.maxStringLength)
+                throw new LimitExceededException(LimitExceededException.Limit.STRING_LENGTH,
+                                                 limits.maxStringLength, m.owner, m.key);
+        }
+
+        private JSONArray array(JSONObject json, ClassPlan.Member m) throws LimitExceededException
+        {
+            JSONArray jarr = FailSafeParser.getJSONArray(json, m.key);
+
+            if(jarr != null && jarr.length() > limits.maxCollectionLength)
+                throw new LimitExceededException(LimitExceededException.Limit.COLLECTION_LENGTH,
+                                                 limits.maxCollectionLength, m.owner, m.key);
+            return jarr;
+        }
+
+        /**
+         * @return the list the member already holds, emptied, when reusing
+         *  (and it's known to be mutable); a new one otherwise
+         */
+        private List newList(Object instance, ClassPlan.Member m, boolean keepMembers)
+                throws UnparsableTypeException, InvalidMemberException
+        {
+            if(!reuse)
+                return new LinkedList();
+
+            Object current = m.read(instance);
+
+            if(current != null && current.getClass() == ArrayList.class)
             {
-                throw new UnparsableTypeException(objType, UnparsableTypeException.UnparsableReason.NOT_ACCESSIBLE);
+                List list = (List) current;
+
+                // -- > an ArrayList of objects gets its members refilled in place
+                if(!keepMembers) list.clear();
+
+                return list;
             }
-            catch (InvocationTargetException e)
+
+            // -- > a LinkedList can't be refilled in place, so one of objects is replaced
+            //     (as is e.g. Collections.emptyList(), or an unmodifiable view)
+            if(current != null && current.getClass() == LinkedList.class && !keepMembers)
             {
-                throw new UnparsableTypeException(objType, UnparsableTypeException.UnparsableReason.NO_EMPTY_CONSTRUCTOR);
+                ((List) current).clear();
+                return (List) current;
             }
+
+            return new ArrayList();
         }
 
-        return result;
-    }
+        @SuppressWarnings("unchecked")
+        private List getCollection(JSONArray arr, ClassPlan.Member m, List result) throws LimitExceededException
+        {
+            Object value = null;
 
-    private static Object process(JSONObject obj, Class objType, JSON.Value ann, JSON.ValueCollection c_ann, JSON.ParseAs parse_as)
-            throws
-            MissingAnnotationException,
-            InvalidAnnotationException,
-            UnparsableTypeException,
-            InvalidMemberException,
-            DuplicatedAnnotationException
+            for(int i = 0; i < arr.length(); i++)
+            {
+                switch(m.type)
+                {
+                    case STRING:
+                        value = FailSafeParser.getString(arr, i);
+                        checkString(value, m);
+                        break;
 
-    {
-        Object o;
-        
-        String key;
-        JSON.Type type;
+                    case INT:
+                        value = FailSafeParser.getInt(arr, i);
+                        break;
+
+                    case LONG:
+                        value = FailSafeParser.getLong(arr, i);
+                        break;
+
+                    case BOOL:
+                        value = FailSafeParser.getBool(arr, i);
+                        break;
 
-        if(ann != null) // Value
+                    case DOUBLE:
+                        value = FailSafeParser.getDouble(arr, i);
+                        break;
+
+                    case DATE:
+                        value = FailSafeParser.getDate(arr, i);
+                        break;
+
+                    case CUSTOM:
+                        value = custom(arr.opt(i), m);
+                        break;
+                }
+
+                if(value!=null)
+                {
+                    count(m.owner, m.key);
+                    if(m.constraints != null) validate(m, value, i);
+                    result.add(value);
+                }
+            }
+
+            validateSize(m, result);
+            return result;
+        }
+
+        private JSONObject object(JSONObject json, ClassPlan.Member m) throws LimitExceededException
         {
-            key = ann.key();
-            type = ann.type();
+            JSONObject jobj = FailSafeParser.getJSONObject(json, m.key);
 
-            switch(type)
-            {
-                case OBJ:
-                    if (parse_as == null)
-                        throw new MissingAnnotationException(JSON.ParseAs.class, objType, null, null);
+            if(jobj != null && jobj.length() > limits.maxCollectionLength)
+                throw new LimitExceededException(LimitExceededException.Limit.COLLECTION_LENGTH,
+                                                 limits.maxCollectionLength, m.owner, m.key);
+            return jobj;
+        }
 
-                    JSONObject temp = FailSafeParser.getJSONObject(obj,key);
+        private Map newMap(ClassPlan.Member m, int size)
+        {
+            if(m.compact)
+                return new CompactMap(m.type, size);
 
-                    o = temp != null ? parse(temp, parse_as.value()) : null; 
+            // -- > sized so that it never rehashes while binding
+            return new HashMap((int) (size / 0.75f) + 1);
+        }
 
-                    break;
+        /**
+         * @return the map the member already holds, when reusing (and it's a mutable map
+         *  of the kind the member asks for); a new one otherwise.
+         *  Reused maps keep their mappings, so that the values can be reused
+         *  (see {@link #removeStale(Map, JSONObject, int)})
+         */
+        private Map newMap(Object instance, ClassPlan.Member m, int size)
+                throws UnparsableTypeException, InvalidMemberException
+        {
+            if(reuse)
+            {
+                Object current = m.read(instance);
+                Class kind = current != null ? current.getClass() : null;
 
-                default:
-                    o = getPrimalValue(obj, key, type);
+                if(m.compact ? kind == CompactMap.class : kind == HashMap.class || kind == LinkedHashMap.class)
+                    return (Map) current;
             }
+
+            return newMap(m, size);
         }
-        else // ValueCollection
+
+        /**
+         * Removes, from a reused map, the keys the JSON object doesn't have a value for.
+         * Nothing is allocated unless there is something to remove.
+         */
+        private void removeStale(Map map, JSONObject json, int bound)
         {
-            key = c_ann.key();
-            type = c_ann.of();
+            if(map.size() == bound) return;
 
-            JSONArray jarr = FailSafeParser.getJSONArray(obj, key);
+            List stale = new ArrayList();
+
+            for(Object key : map.keySet())
+                if(!json.has((String) key)) stale.add(key);
+
+            for(Object key : stale)
+                map.remove(key);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map getMap(JSONObject json, ClassPlan.Member m, Map result) throws LimitExceededException
+        {
+            Iterator keys = json.keys();
+            int bound = 0;
 
-            if(jarr == null) o = new LinkedList();
-            else
+            while(keys.hasNext())
             {
-                switch(type)
-                {
-                    case OBJ:
-                        if (parse_as == null)
-                            throw new MissingAnnotationException(JSON.ParseAs.class, objType, null, null);
+                String key = (String) keys.next();
+                checkString(key, m);
 
-                        o = getCollection(jarr, type, parse_as.value());
-                        break;
+                Object value = primal(json, key, m);
 
-                    default:
-                        o = getCollection(jarr, type, null);
+                if(value != null)
+                {
+                    count(m.owner, m.key);
+                    result.put(key, value);
+                    bound++;
+                }
+                else if(reuse)
+                {
+                    result.remove(key);
                 }
             }
+
+            if(reuse) removeStale(result, json, bound);
+            return result;
         }
 
-        return o;
-    }
+        private abstract class Frame
+        {
+            int depth;
+            /** The key (or position, in a collection) of this frame in its parent */
+            String key;
+            int position;
 
-    private static List getCollection(JSONArray arr, JSON.Type type, Class cls)
-            throws
-            UnparsableTypeException,
-            MissingAnnotationException,
-            InvalidAnnotationException,
-            InvalidMemberException,
-            DuplicatedAnnotationException
+            void init(int depth, String key, int position)
+            {
+                this.depth = depth;
+                this.key = key;
+                this.position = position;
+            }
 
-    {
-        List result = new LinkedList();
-        Object value = null;
+            /**
+             * Binds as much as possible
+             * @return the frame for the next nested value, or null when done
+             */
+            abstract Frame next()
+                    throws
+                    InvalidAnnotationException,
+                    UnparsableTypeException,
+                    MissingAnnotationException,
+                    DuplicatedAnnotationException,
+                    InvalidMemberException,
+                    LimitExceededException;
+
+            /** Receives the result of the frame returned by next() */
+            abstract void childDone(Object value) throws UnparsableTypeException, InvalidMemberException;
+
+            abstract Object result();
+
+            /** Drops what the frame was binding, and gives it back to be used again */
+            abstract void release();
+        }
 
-        for(int i = 0; i < arr.length(); i++)
+        /** Binds the members of one object */
+        private class ObjectFrame extends Frame
         {
-            switch(type)
+            private JSONObject json;
+            private ClassPlan plan;
+            private Object instance;
+            private int index;
+            private ClassPlan.Member pending;
+
+            /**
+             * @param instance - The instance to bind into, or null for a new one
+             */
+            void init(JSONObject json, Class objType, Object instance, int depth, String key, int position)
+                    throws
+                    InvalidAnnotationException,
+                    UnparsableTypeException,
+                    MissingAnnotationException,
+                    DuplicatedAnnotationException
             {
-                case STRING:
-                    value = FailSafeParser.getString(arr, i);
-                    break;
+                init(depth, key, position);
+                this.json = json;
+                this.instance = instance != null ? instance : instantiate(objType);
+                this.plan = ClassPlan.of(objType);
+                this.index = 0;
+            }
 
-                case INT:
-                    value = FailSafeParser.getInt(arr, i);
-                    break;
+            @Override
+            Frame next()
+                    throws
+                    InvalidAnnotationException,
+                    UnparsableTypeException,
+                    MissingAnnotationException,
+                    DuplicatedAnnotationException,
+                    InvalidMemberException,
+                    LimitExceededException
+            {
+                while(index < plan.members.length)
+                {
+                    ClassPlan.Member m = plan.members[index++];
+
+                    switch(m.kind)
+                    {
+                        case VALUE:
+                        {
+                            if(m.type != JSON.Type.OBJ)
+                            {
+                                Object value = primal(json, m);
+                                if(value != null) count(plan.type, m.key);
+                                validate(m, value, -1);
+                                m.assign(instance, value);
+                                continue;
+                            }
+
+                            JSONObject temp = FailSafeParser.getJSONObject(json, m.key);
+
+                            if(temp == null)
+                            {
+                                validate(m, null, -1);
+                                m.assign(instance, null);
+                                continue;
+                            }
+
+                            enter(depth + 1, plan.type, m.key);
+                            count(plan.type, m.key);
+                            pending = m;
+                            Object current = reuse ? reusable(m.read(instance), m.parseAs) : null;
+                            return objectFrame(temp, m.parseAs, current, depth + 1, m.key, -1);
+                        }
+
+                        case COLLECTION:
+                        {
+                            JSONArray jarr = array(json, m);
+                            validateCollection(m, json);
+
+                            if(jarr == null)
+                            {
+                                m.assign(instance, newList(instance, m, false));
+                                continue;
+                            }
+
+                            if(m.type != JSON.Type.OBJ)
+                            {
+                                m.assign(instance, getCollection(jarr, m, newList(instance, m, false)));
+                                continue;
+                            }
+
+                            enter(depth + 1, plan.type, m.key);
+                            pending = m;
+                            return collectionFrame(jarr, m, newList(instance, m, true), depth + 1);
+                        }
+
+                        case MAP:
+                        {
+                            JSONObject jmap = object(json, m);
+
+                            if(jmap == null)
+                            {
+                                Map empty = newMap(instance, m, 0);
+                                empty.clear();
+                                m.assign(instance, empty);
+                                continue;
+                            }
+
+                            if(m.type != JSON.Type.OBJ)
+                            {
+                                m.assign(instance, getMap(jmap, m, newMap(instance, m, jmap.length())));
+                                continue;
+                            }
+
+                            enter(depth + 1, plan.type, m.key);
+                            pending = m;
+                            return mapFrame(jmap, m, newMap(instance, m, jmap.length()), depth + 1);
+                        }
+                    }
+                }
 
-                case LONG:
-                    value = FailSafeParser.getLong(arr, i);
-                    break;
+                return null;
+            }
 
-                case BOOL:
-                    value = FailSafeParser.getBool(arr, i);
-                    break;
+            @Override
+            void childDone(Object value) throws UnparsableTypeException, InvalidMemberException
+            {
+                if(pending.kind == ClassPlan.Kind.COLLECTION) validateSize(pending, (List) value);
 
-                case DOUBLE:
-                    value = FailSafeParser.getDouble(arr, i);
-                    break;
+                pending.assign(instance, value);
+                pending = null;
+            }
 
-                case DATE:
-                    value = FailSafeParser.getDate(arr, i);
-                    break;
+            @Override
+            Object result()
+            {
+                return instance;
+            }
 
-                case OBJ:
-                    JSONObject obj = FailSafeParser.getJSONObject(arr, i);
-                    if(obj != null) value = parse(obj, cls);
-                    break;
+            @Override
+            void release()
+            {
+                json = null;
+                plan = null;
+                instance = null;
+                pending = null;
+                key = null;
+                objectFrames.push(this);
+            }
+        }
+
+        /** @return the given object, if it can be refilled as an instance of type */
+        private Object reusable(Object current, Class type)
+        {
+            return current != null && current.getClass() == type ? current : null;
+        }
+
+        /** Binds the members of a collection of objects */
+        private class CollectionFrame extends Frame
+        {
+            private JSONArray arr;
+            private ClassPlan.Member member;
+            private List result;
+            /** How many members the list held before, and how many it holds now */
+            private int previous;
+            private int bound;
+            private int index;
+
+            void init(JSONArray arr, ClassPlan.Member member, List result, int depth)
+            {
+                init(depth, member.key, -1);
+                this.arr = arr;
+                this.member = member;
+                this.result = result;
+                this.previous = result.size();
+                this.bound = 0;
+                this.index = 0;
+            }
+
+            @Override
+            Frame next()
+                    throws
+                    InvalidAnnotationException,
+                    UnparsableTypeException,
+                    MissingAnnotationException,
+                    DuplicatedAnnotationException,
+                    LimitExceededException
+            {
+                while(index < arr.length())
+                {
+                    JSONObject obj = FailSafeParser.getJSONObject(arr, index);
+
+                    if(obj != null)
+                    {
+                        enter(depth + 1, member.owner, member.key);
+                        count(member.owner, member.key);
+
+                        // -- > previous is only ever positive when reusing
+                        Object current = bound < previous ? reusable(result.get(bound), member.parseAs) : null;
+                        return objectFrame(obj, member.parseAs, current, depth + 1, null, index++);
+                    }
+
+                    index++;
+                }
+
+                // -- > drop whatever was left from the previous contents
+                for(int i = result.size() - 1; i >= bound; i--)
+                    result.remove(i);
+
+                return null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            void childDone(Object value)
+            {
+                if(value == null) return;
+
+                if(bound < previous)
+                    result.set(bound, value);
+                else
+                    result.add(value);
+
+                bound++;
+            }
+
+            @Override
+            Object result()
+            {
+                return result;
+            }
+
+            @Override
+            void release()
+            {
+                arr = null;
+                member = null;
+                result = null;
+                key = null;
+                collectionFrames.push(this);
+            }
+        }
+
+        /** Binds the values of a map of objects */
+        private class MapFrame extends Frame
+        {
+            private JSONObject json;
+            private ClassPlan.Member member;
+            private Iterator keys;
+            private Map result;
+            private String mapKey;
+            private int bound;
+
+            void init(JSONObject json, ClassPlan.Member member, Map result, int depth)
+            {
+                init(depth, member.key, -1);
+                this.json = json;
+                this.member = member;
+                this.keys = json.keys();
+                this.result = result;
+                this.mapKey = null;
+                this.bound = 0;
             }
 
-            if(value!=null) result.add(value);
+            @Override
+            Frame next()
+                    throws
+                    InvalidAnnotationException,
+                    UnparsableTypeException,
+                    MissingAnnotationException,
+                    DuplicatedAnnotationException,
+                    LimitExceededException
+            {
+                while(keys.hasNext())
+                {
+                    mapKey = (String) keys.next();
+                    checkString(mapKey, member);
+
+                    JSONObject obj = FailSafeParser.getJSONObject(json, mapKey);
+
+                    if(obj != null)
+                    {
+                        enter(depth + 1, member.owner, member.key);
+                        count(member.owner, member.key);
+
+                        Object current = reuse ? reusable(result.get(mapKey), member.parseAs) : null;
+                        return objectFrame(obj, member.parseAs, current, depth + 1, mapKey, -1);
+                    }
+                    else if(reuse)
+                    {
+                        result.remove(mapKey);
+                    }
+                }
+
+                if(reuse) removeStale(result, json, bound);
+                return null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            void childDone(Object value)
+            {
+                if(value == null) return;
+
+                result.put(mapKey, value);
+                bound++;
+            }
+
+            @Override
+            Object result()
+            {
+                return result;
+            }
+
+            @Override
+            void release()
+            {
+                json = null;
+                member = null;
+                keys = null;
+                result = null;
+                mapKey = null;
+                key = null;
+                mapFrames.push(this);
+            }
         }
+    }
+
+    /**
+     * Applies the member's converter to a raw value; like the {@link FailSafeParser},
+     * this gives null for values that can't be converted
+     */
+    private static Object convert(Object raw, ClassPlan.Member m)
+    {
+        if(raw == null || raw == JSONObject.NULL) return null;
 
-        return result;
+        try
+        {
+            return m.converter.convert(raw);
+        }
+        catch (RuntimeException e)
+        {
+            return null;
+        }
     }
 
     private static Object getPrimalValue(JSONObject json, String key, JSON.Type type)
@@ -328,6 +1033,11 @@ public abstract class JSONAnnotationParser
             super(c.getName(), c, m, f);
         }
 
+        protected InvalidMemberException(String msg, Class c)
+        {
+            super(msg, c, null, null);
+        }
+
         @Override
         public String getHumanReadableReason()
         {
@@ -449,4 +1159,103 @@ public abstract class JSONAnnotationParser
             NO_EMPTY_CONSTRUCTOR, NOT_ACCESSIBLE
         }
     }
+
+    /** Thrown when parsing is aborted for exceeding one of the {@link ParseLimits} */
+    public static class LimitExceededException extends JSONParserException
+    {
+        private static final long serialVersionUID = 6083417760329471853L;
+
+        public Limit limit;
+        public int max;
+        public String key;
+
+        public LimitExceededException(Limit limit, int max, Class c, String key)
+        {
+            super(String.format("Limit exceeded: %s", limit), c);
+            this.limit = limit;
+            this.max = max;
+            this.key = key;
+        }
+
+        @Override
+        public String getHumanReadableReason()
+        {
+            String start;
+
+            switch (limit)
+            {
+                case DEPTH:
+                    start = String.format("Nesting deeper than %d", max);
+                    break;
+                case ELEMENTS:
+                    start = String.format("More than %d elements", max);
+                    break;
+                case COLLECTION_LENGTH:
+                    start = String.format("Collection longer than %d", max);
+                    break;
+                case STRING_LENGTH:
+                    start = String.format("String longer than %d", max);
+                    break;
+                default:
+                    start = limit.toString();
+            }
+
+            return start + String.format(" in class %s, key %s", cls.getName(), key);
+        }
+
+        public enum Limit
+        {
+            DEPTH, ELEMENTS, COLLECTION_LENGTH, STRING_LENGTH
+        }
+    }
+
+    /**
+     * Thrown when the parsed values break the constraints in their annotations.
+     * Holds every violation found, each with the JSON path of the offending value.
+     * (It is an InvalidMemberException, with neither field nor method, so that
+     * code catching the exceptions parsing always threw keeps compiling.)
+     */
+    public static class ValidationException extends InvalidMemberException
+    {
+        private static final long serialVersionUID = -2761370858128940525L;
+
+        public List<Violation> violations;
+
+        public ValidationException(Class c, List<Violation> violations)
+        {
+            super(String.format("%d validation error(s)", violations.size()), c);
+            this.violations = violations;
+        }
+
+        @Override
+        public String getHumanReadableReason()
+        {
+            StringBuilder reason = new StringBuilder(String.format("Invalid %s:", cls.getName()));
+
+            for(Violation v : violations)
+                reason.append(String.format("%n  %s %s", v.path, v.reason));
+
+            return reason.toString();
+        }
+
+        public static class Violation implements Serializable
+        {
+            private static final long serialVersionUID = 4213018529873914405L;
+
+            public final String path;
+            public final String reason;
+
+            public Violation(String path, String reason)
+            {
+                this.path = path;
+                this.reason = reason;
+            }
+
+            @Override
+            public String toString()
+            {
+                return path + " " + reason;
+            }
+        }
+    }
 }
@@ -0,0 +1,513 @@
+package me.tiagovalente.jsonannotation;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An annotation processor that, at build time, finds the {@link JSONParsable} classes being compiled
+ * (and those of their superclasses being compiled with them), checks their annotations, and writes:
+ *  - a {@link PlanIndex} of their members, so their plans are built without scanning annotations;
+ *  - the native-image configuration (reflect-config.json and resource-config.json) for
+ *    the members, constructors and converters the parser reaches reflectively.
+ *
+ * It is registered as a service (resources/META-INF/services, which goes into the library's jar
+ * along with the classes), so having the jar on the annotation processor path is enough.
+ * The library itself is compiled with -proc:none, so that javac doesn't look for processors to run on it.
+ * The native-image files go under META-INF/native-image/&lt;project&gt;/, where the project is given by
+ * the {@value #PROJECT} option (-Ajsonannotation.project=...), and defaults to "jsonannotation".
+ *
+ * Only the classes compiled together end up in the index; any other class is still scanned at runtime.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class JSONParsableProcessor extends AbstractProcessor
+{
+    public static final String PROJECT = "jsonannotation.project";
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private Filer filer;
+    private TypeMirror parsable;
+
+    /** Indexed members, by the binary name of the class declaring them */
+    private final Map<String, List<PlanIndex.Entry>> index = new LinkedHashMap<String, List<PlanIndex.Entry>>();
+    /** What must be reachable reflectively, by the binary name of each class */
+    private final Map<String, Reflected> reflected = new LinkedHashMap<String, Reflected>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env)
+    {
+        super.init(env);
+
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+        this.messager = env.getMessager();
+        this.filer = env.getFiler();
+
+        TypeElement parsableElement = elements.getTypeElement(JSONParsable.class.getCanonicalName());
+        this.parsable = parsableElement != null ? parsableElement.asType() : null;
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes()
+    {
+        // -- > parsable classes may have no annotations of their own
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public Set<String> getSupportedOptions()
+    {
+        return Collections.singleton(PROJECT);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round)
+    {
+        if(parsable == null) return false;
+
+        if(round.processingOver())
+        {
+            if(!index.isEmpty()) write();
+            return false;
+        }
+
+        Set<TypeElement> compiled = new LinkedHashSet<TypeElement>();
+        for(TypeElement t : ElementFilter.typesIn(round.getRootElements()))
+            collect(t, compiled);
+
+        for(TypeElement t : compiled)
+        {
+            if(t.getKind() != ElementKind.CLASS || !types.isAssignable(types.erasure(t.asType()), parsable))
+                continue;
+
+            visit(t);
+
+            // -- > superclasses are indexed here only if they're being compiled too;
+            //     the ones from dependencies are left to their own index (or to scanning)
+            for(TypeElement parent = superclass(t); parent != null; parent = superclass(parent))
+                if(compiled.contains(parent)) visit(parent);
+        }
+
+        return false;
+    }
+
+    /** Adds the type, and the ones nested in it */
+    private static void collect(TypeElement t, Set<TypeElement> types)
+    {
+        types.add(t);
+
+        for(TypeElement nested : ElementFilter.typesIn(t.getEnclosedElements()))
+            collect(nested, types);
+    }
+
+    private static TypeElement superclass(TypeElement t)
+    {
+        TypeMirror parent = t.getSuperclass();
+        return parent.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) parent).asElement() : null;
+    }
+
+    /**
+     * Indexes the members declared by the class: its fields first, then its transformation methods,
+     * which is the order they're bound in when the class is scanned
+     */
+    private void visit(TypeElement t)
+    {
+        String name = binaryName(t);
+        if(index.containsKey(name)) return;
+
+        List<PlanIndex.Entry> entries = new ArrayList<PlanIndex.Entry>();
+        index.put(name, entries);
+
+        Reflected r = reflected(name);
+        r.methods.add(method("<init>"));
+
+        for(VariableElement f : ElementFilter.fieldsIn(t.getEnclosedElements()))
+        {
+            PlanIndex.Entry entry = entry(f, null);
+            if(entry == null) continue;
+
+            entries.add(entry);
+            r.fields.add(String.format("{ \"name\" : \"%s\", \"allowWrite\" : true }", entry.name));
+        }
+
+        for(ExecutableElement m : ElementFilter.methodsIn(t.getEnclosedElements()))
+        {
+            if(m.getAnnotation(JSON.TransformationMethod.class) == null) continue;
+
+            List<String> parameters = new ArrayList<String>();
+            for(VariableElement p : m.getParameters())
+                parameters.add(typeName(p.asType()));
+
+            PlanIndex.Entry entry = entry(m, parameters.toArray(new String[parameters.size()]));
+            if(entry == null) continue;
+
+            entries.add(entry);
+            r.methods.add(method(entry.name, entry.parameters));
+        }
+    }
+
+    /**
+     * @return the index entry of the annotated member, or null if it isn't annotated,
+     * or its annotations are broken (which is reported as an error)
+     */
+    private PlanIndex.Entry entry(Element e, String[] parameters)
+    {
+        JSON.Value ann = e.getAnnotation(JSON.Value.class);
+        JSON.ValueCollection collection_ann = e.getAnnotation(JSON.ValueCollection.class);
+        JSON.ValueMap map_ann = e.getAnnotation(JSON.ValueMap.class);
+        int count = (ann != null ? 1 : 0) + (collection_ann != null ? 1 : 0) + (map_ann != null ? 1 : 0);
+
+        if(count == 0)
+        {
+            if(parameters != null) error(e, "Transformation method without a JSON.Value, ValueCollection or ValueMap annotation");
+            return null;
+        }
+
+        if(count > 1)
+        {
+            error(e, "Duplicated JSON annotation");
+            return null;
+        }
+
+        if(parameters != null && parameters.length != 1)
+        {
+            error(e, "Transformation methods should accept only one parameter");
+            return null;
+        }
+
+        ClassPlan.Kind kind;
+        JSON.Type type;
+        PlanIndex.Entry entry;
+        String name = e.getSimpleName().toString();
+        TypeElement parseAs = classValue(e, JSON.ParseAs.class);
+        TypeElement converter = classValue(e, JSON.Convert.class);
+        String parseAsName = parseAs != null ? binaryName(parseAs) : null;
+        String converterName = converter != null ? binaryName(converter) : null;
+
+        if(ann != null)
+        {
+            kind = ClassPlan.Kind.VALUE;
+            type = ann.type();
+            entry = new PlanIndex.Entry(kind, name, parameters, ann.key(), type, false, parseAsName, converterName,
+                                        ann.required(), ann.min(), ann.max(), ann.maxLength(), ann.pattern(),
+                                        0, Integer.MAX_VALUE);
+        }
+        else if(collection_ann != null)
+        {
+            kind = ClassPlan.Kind.COLLECTION;
+            type = collection_ann.of();
+            entry = new PlanIndex.Entry(kind, name, parameters, collection_ann.key(), type, false,
+                                        parseAsName, converterName, collection_ann.required(),
+                                        collection_ann.min(), collection_ann.max(), collection_ann.maxLength(),
+                                        collection_ann.pattern(), collection_ann.minSize(), collection_ann.maxSize());
+        }
+        else
+        {
+            kind = ClassPlan.Kind.MAP;
+            type = map_ann.of();
+            entry = new PlanIndex.Entry(kind, name, parameters, map_ann.key(), type, map_ann.compact(),
+                                        parseAsName, converterName, false, Double.NEGATIVE_INFINITY,
+                                        Double.POSITIVE_INFINITY, Integer.MAX_VALUE, "", 0, Integer.MAX_VALUE);
+        }
+
+        try
+        {
+            Constraints.of(entry.required, entry.min, entry.max, entry.maxLength, entry.pattern,
+                           entry.minSize, entry.maxSize);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            error(e, "Invalid constraints: " + ex.getMessage());
+            return null;
+        }
+
+        if(type == JSON.Type.OBJ)
+        {
+            if(parseAs == null)
+            {
+                error(e, "OBJ members require a JSON.ParseAs annotation");
+                return null;
+            }
+
+            // -- > it's indexed on its own, if it's being compiled
+            reflected(parseAsName).methods.add(method("<init>"));
+        }
+
+        if(type != JSON.Type.CUSTOM && converter != null)
+        {
+            error(e, "JSON.Convert is only allowed on CUSTOM members");
+            return null;
+        }
+
+        if(type == JSON.Type.CUSTOM)
+        {
+            if(converter == null)
+            {
+                error(e, "CUSTOM members require a JSON.Convert annotation");
+                return null;
+            }
+
+            if(!converter(converter))
+            {
+                error(e, String.format("%s has neither a public (Class) nor a public empty constructor", converterName));
+                return null;
+            }
+
+            TypeElement target = parseAs;
+
+            if(target == null && kind == ClassPlan.Kind.VALUE)
+            {
+                TypeMirror t = e.getKind() == ElementKind.FIELD
+                        ? e.asType()
+                        : ((ExecutableElement) e).getParameters().get(0).asType();
+
+                if(t.getKind() == TypeKind.DECLARED) target = (TypeElement) ((DeclaredType) t).asElement();
+            }
+
+            // -- > e.g. for the enum converter
+            if(target != null && target.getKind() == ElementKind.ENUM)
+                reflected(binaryName(target)).methods.add(method("values"));
+        }
+
+        return entry;
+    }
+
+    /**
+     * Registers the constructors the converter will be instantiated with
+     * @return whether it has any
+     */
+    private boolean converter(TypeElement converter)
+    {
+        Reflected r = reflected(binaryName(converter));
+        boolean found = false;
+
+        for(ExecutableElement c : ElementFilter.constructorsIn(converter.getEnclosedElements()))
+        {
+            if(!c.getModifiers().contains(Modifier.PUBLIC)) continue;
+
+            List<? extends VariableElement> parameters = c.getParameters();
+
+            if(parameters.isEmpty())
+            {
+                r.methods.add(method("<init>"));
+                found = true;
+            }
+            else if(parameters.size() == 1 && typeName(parameters.get(0).asType()).equals("java.lang.Class"))
+            {
+                r.methods.add(method("<init>", "java.lang.Class"));
+                found = true;
+            }
+        }
+
+        return found;
+    }
+
+    /** @return the class given to the annotation, if the element has it */
+    private TypeElement classValue(Element e, Class<? extends Annotation> a)
+    {
+        Annotation ann = e.getAnnotation(a);
+        if(ann == null) return null;
+
+        TypeMirror value;
+
+        try
+        {
+            // -- > a Class can't be had at compile time, so this throws with its mirror instead
+            if(ann instanceof JSON.ParseAs) ((JSON.ParseAs) ann).value();
+            else ((JSON.Convert) ann).value();
+
+            return null;
+        }
+        catch (MirroredTypeException ex)
+        {
+            value = ex.getTypeMirror();
+        }
+
+        return value.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) value).asElement() : null;
+    }
+
+    private void write()
+    {
+        String project = processingEnv.getOptions().get(PROJECT);
+        if(project == null || project.length() == 0) project = "jsonannotation";
+
+        String config = "META-INF/native-image/" + project + "/";
+
+        try
+        {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", PlanIndex.RESOURCE);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file.openOutputStream()));
+            try
+            {
+                PlanIndex.write(out, index);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            writeReflectConfig(filer.createResource(StandardLocation.CLASS_OUTPUT, "", config + "reflect-config.json"));
+
+            PrintWriter resources = writer(filer.createResource(StandardLocation.CLASS_OUTPUT, "",
+                                                                config + "resource-config.json"));
+            try
+            {
+                resources.println("{");
+                resources.println("  \"resources\" : {");
+                resources.printf("    \"includes\" : [ { \"pattern\" : \"\\\\Q%s\\\\E\" } ]%n", PlanIndex.RESOURCE);
+                resources.println("  }");
+                resources.println("}");
+            }
+            finally
+            {
+                resources.close();
+            }
+        }
+        catch (IOException e)
+        {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Couldn't write the JSON plan index: " + e.getMessage());
+        }
+    }
+
+    private void writeReflectConfig(FileObject file) throws IOException
+    {
+        PrintWriter out = writer(file);
+
+        try
+        {
+            out.println("[");
+
+            int i = 0;
+            for(Map.Entry<String, Reflected> e : reflected.entrySet())
+            {
+                Reflected r = e.getValue();
+
+                out.println("  {");
+                out.printf("    \"name\" : \"%s\",%n", e.getKey());
+                out.printf("    \"methods\" : [%s],%n", join(r.methods));
+                out.printf("    \"fields\" : [%s]%n", join(r.fields));
+                out.println(++i < reflected.size() ? "  }," : "  }");
+            }
+
+            out.println("]");
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static PrintWriter writer(FileObject file) throws IOException
+    {
+        OutputStream out = file.openOutputStream();
+        return new PrintWriter(new OutputStreamWriter(out, "UTF-8"));
+    }
+
+    private static String join(Set<String> items)
+    {
+        if(items.isEmpty()) return "";
+
+        StringBuilder sb = new StringBuilder();
+        for(String item : items)
+            sb.append(sb.length() == 0 ? "\n      " : ",\n      ").append(item);
+
+        return sb.append("\n    ").toString();
+    }
+
+    private static String method(String name, String... parameters)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for(String p : parameters)
+            sb.append(sb.length() == 0 ? "" : ", ").append('"').append(p).append('"');
+
+        return String.format("{ \"name\" : \"%s\", \"parameterTypes\" : [%s] }", name, sb);
+    }
+
+    private Reflected reflected(String name)
+    {
+        Reflected r = reflected.get(name);
+
+        if(r == null)
+        {
+            r = new Reflected();
+            reflected.put(name, r);
+        }
+
+        return r;
+    }
+
+    private String binaryName(TypeElement t)
+    {
+        return elements.getBinaryName(t).toString();
+    }
+
+    /** @return the name of the (erased) type, as given by {@link Class#getTypeName()} */
+    private String typeName(TypeMirror t)
+    {
+        TypeMirror erased = types.erasure(t);
+
+        if(erased.getKind() == TypeKind.ARRAY)
+            return typeName(((ArrayType) erased).getComponentType()) + "[]";
+        if(erased.getKind() == TypeKind.DECLARED)
+            return binaryName((TypeElement) ((DeclaredType) erased).asElement());
+
+        return erased.toString();
+    }
+
+    private void error(Element e, String message)
+    {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, e);
+    }
+
+    /** The entries of a class in reflect-config.json, as JSON objects */
+    private static class Reflected
+    {
+        final Set<String> methods = new LinkedHashSet<String>();
+        final Set<String> fields = new LinkedHashSet<String>();
+    }
+}
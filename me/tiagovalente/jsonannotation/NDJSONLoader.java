@@ -0,0 +1,345 @@
+package me.tiagovalente.jsonannotation;
+
+import me.tiagovalente.jsonannotation.JSONAnnotationParser.JSONParserException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk loader for newline-delimited JSON (NDJSON) files.
+ * The file is memory-mapped and split into chunks at newline boundaries;
+ * each chunk is then parsed and bound in parallel by the
+ * {@link JSONAnnotationParser}, and the results are handed to a {@link Sink}.
+ *
+ * The sink is always called from the thread that invoked {@link #load(File, Sink)},
+ * and only a bounded number of chunks is kept in flight, so a slow sink
+ * naturally slows down the reading (backpressure).
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class NDJSONLoader<T extends JSONParsable>
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final Class<T> target;
+    private ExecutorService executor;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int maxPendingChunks;
+    private boolean ordered = true;
+    private ParseLimits limits = ParseLimits.NONE;
+
+    /**
+     * @param target - The class each line should be parsed as
+     */
+    public NDJSONLoader(Class<T> target)
+    {
+        this.target = target;
+        this.maxPendingChunks = 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Sets the pool used for parsing. The pool is not shut down by the loader.
+     * If none is given, a fixed pool with one thread per processor is created for each load.
+     */
+    public NDJSONLoader<T> executor(ExecutorService executor)
+    {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the approximate size, in bytes, of each chunk.
+     * Chunks are always extended up to the next newline.
+     */
+    public NDJSONLoader<T> chunkSize(int bytes)
+    {
+        if(bytes <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        this.chunkSize = bytes;
+        return this;
+    }
+
+    /**
+     * Sets how many chunks may be read ahead of the sink.
+     */
+    public NDJSONLoader<T> maxPendingChunks(int chunks)
+    {
+        if(chunks <= 0) throw new IllegalArgumentException("Pending chunks must be positive");
+        this.maxPendingChunks = chunks;
+        return this;
+    }
+
+    /**
+     * If true (the default), results are delivered in file order;
+     * otherwise, each chunk is delivered as soon as it is parsed.
+     */
+    public NDJSONLoader<T> ordered(boolean ordered)
+    {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Sets the limits applied to every line
+     */
+    public NDJSONLoader<T> limits(ParseLimits limits)
+    {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Loads the whole file into the given sink
+     * @param file - The NDJSON file to read
+     * @param sink - Receives every bound object and every malformed line
+     * @return the number of objects delivered to the sink
+     */
+    public long load(File file, Sink<? super T> sink) throws IOException, InterruptedException
+    {
+        boolean ownExecutor = executor == null;
+        ExecutorService pool = ownExecutor
+                ? Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())
+                : executor;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try
+        {
+            return load(raf.getChannel(), pool, sink);
+        }
+        finally
+        {
+            raf.close();
+            if(ownExecutor) pool.shutdownNow();
+        }
+    }
+
+    private long load(FileChannel channel, ExecutorService pool, Sink<? super T> sink)
+            throws IOException, InterruptedException
+    {
+        CompletionService<Chunk<T>> completion = new ExecutorCompletionService<Chunk<T>>(pool);
+        ArrayDeque<Future<Chunk<T>>> pending = new ArrayDeque<Future<Chunk<T>>>();
+        long size = channel.size();
+        long position = 0;
+        long delivered = 0;
+
+        try
+        {
+            while(position < size)
+            {
+                // -- > wait for the sink to catch up before reading any further
+                if(pending.size() >= maxPendingChunks)
+                    delivered += deliver(next(completion, pending), sink);
+
+                MappedByteBuffer buffer = mapChunk(channel, position, size);
+                ChunkTask task = new ChunkTask(buffer, position);
+
+                // -- > only unordered loads need to know which chunk completes first
+                pending.add(ordered ? pool.submit(task) : completion.submit(task));
+                position += buffer.limit();
+            }
+
+            while(!pending.isEmpty())
+                delivered += deliver(next(completion, pending), sink);
+        }
+        finally
+        {
+            for(Future<Chunk<T>> f : pending)
+                f.cancel(true);
+        }
+
+        return delivered;
+    }
+
+    private Chunk<T> next(CompletionService<Chunk<T>> completion, ArrayDeque<Future<Chunk<T>>> pending)
+            throws IOException, InterruptedException
+    {
+        Future<Chunk<T>> future;
+
+        if(ordered)
+        {
+            future = pending.poll();
+        }
+        else
+        {
+            future = completion.take();
+            pending.remove(future);
+        }
+
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private long deliver(Chunk<T> chunk, Sink<? super T> sink) throws InterruptedException
+    {
+        for(MalformedLine m : chunk.malformed)
+            sink.malformed(m);
+
+        for(T value : chunk.values)
+            sink.accept(value);
+
+        return chunk.values.size();
+    }
+
+    /**
+     * Maps the region starting at 'start', ending right after the last newline
+     * found within chunkSize bytes (or at the end of the file).
+     * A single line longer than chunkSize makes the region grow until it fits.
+     */
+    private MappedByteBuffer mapChunk(FileChannel channel, long start, long size) throws IOException
+    {
+        long length = Math.min(chunkSize, size - start);
+
+        while(true)
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+
+            if(start + length == size)
+                return buffer;
+
+            for(int i = (int) length - 1; i >= 0; i--)
+            {
+                if(buffer.get(i) == '\n')
+                {
+                    buffer.limit(i + 1);
+                    return buffer;
+                }
+            }
+
+            if(length >= Integer.MAX_VALUE)
+                throw new IOException(String.format("Line starting at offset %d is too long", start));
+
+            length = Math.min(Math.min(length * 2, Integer.MAX_VALUE), size - start);
+        }
+    }
+
+    /** Splits one chunk into lines, and parses each of them */
+    private class ChunkTask implements Callable<Chunk<T>>
+    {
+        private final ByteBuffer buffer;
+        private final long offset;
+
+        ChunkTask(ByteBuffer buffer, long offset)
+        {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        @Override
+        public Chunk<T> call()
+        {
+            Chunk<T> chunk = new Chunk<T>();
+            int limit = buffer.limit();
+            int lineStart = 0;
+
+            for(int i = 0; i <= limit; i++)
+            {
+                if(i < limit && buffer.get(i) != '\n') continue;
+
+                int lineEnd = i;
+                if(lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') lineEnd--;
+
+                if(lineEnd > lineStart)
+                    parseLine(chunk, lineStart, lineEnd);
+
+                lineStart = i + 1;
+            }
+
+            return chunk;
+        }
+
+        private void parseLine(Chunk<T> chunk, int start, int end)
+        {
+            ByteBuffer bytes = buffer.duplicate();
+            bytes.limit(end);
+            bytes.position(start);
+
+            String line = UTF8.decode(bytes).toString();
+
+            if(line.trim().length() == 0) return;
+
+            try
+            {
+                chunk.values.add(JSONAnnotationParser.parse(new JSONObject(line), target, limits));
+            }
+            catch (JSONParserException e)
+            {
+                chunk.malformed.add(new MalformedLine(offset + start, line, e));
+            }
+            catch (RuntimeException e)
+            {
+                // -- > org.json reports syntax errors as (unchecked) JSONException
+                chunk.malformed.add(new MalformedLine(offset + start, line, e));
+            }
+        }
+    }
+
+    private static class Chunk<T>
+    {
+        final List<T> values = new ArrayList<T>();
+        final List<MalformedLine> malformed = new ArrayList<MalformedLine>();
+    }
+
+    /**
+     * Receives the results of a load, always from the loading thread.
+     * Blocking in these methods holds back the reading of further chunks.
+     */
+    public interface Sink<T>
+    {
+        void accept(T value) throws InterruptedException;
+
+        void malformed(MalformedLine line) throws InterruptedException;
+    }
+
+    /** A line that could not be parsed or bound */
+    public static class MalformedLine
+    {
+        /** Byte offset of the line's first byte in the file */
+        public final long offset;
+        public final String line;
+        public final Exception cause;
+
+        public MalformedLine(long offset, String line, Exception cause)
+        {
+            this.offset = offset;
+            this.line = line;
+            this.cause = cause;
+        }
+
+        public String getHumanReadableReason()
+        {
+            String reason = cause instanceof JSONParserException
+                    ? ((JSONParserException) cause).getHumanReadableReason()
+                    : cause.getMessage();
+
+            return String.format("Malformed line at offset %d: %s", offset, reason);
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package me.tiagovalente.jsonannotation;
+
+import me.tiagovalente.jsonannotation.JSONAnnotationParser.JSONParserException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A memoizing layer over the {@link JSONAnnotationParser}, for input that repeats itself.
+ * Parsed objects are cached by their class and a hash of the input; parsing the same
+ * input again returns the very same object. Only classes marked {@link JSON.Immutable}
+ * may be cached, as the cached objects are shared by every caller.
+ *
+ * Raw input is keyed by the String itself, JSONObjects by a copy of themselves. Either is hashed
+ * (JSONObjects by a walk of their content, which doesn't depend on key order nor build a String),
+ * and compared on hits ({@link JSONObject#similar(Object)}), so different inputs never share an object.
+ * The hashes are seeded per cache, so colliding input can't be crafted in advance.
+ *
+ * The cache holds about maxEntries objects, evicting the least recently used ones
+ * (per segment), and each object for at most the given time. It is split in independently locked
+ * segments, and never blocks on a monitor.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class ParseCache
+{
+    private static final int MAX_SEGMENTS = 16;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final long seed = new SecureRandom().nextLong();
+    private final long ttlNanos;
+    private volatile ParseLimits limits = ParseLimits.NONE;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries - How many parsed objects the cache may hold
+     * @param ttl - For how long each object may be returned after being parsed
+     */
+    public ParseCache(int maxEntries, long ttl, TimeUnit unit)
+    {
+        if(maxEntries <= 0 || ttl <= 0) throw new IllegalArgumentException("Size and time to live must be positive");
+
+        this.ttlNanos = unit.toNanos(ttl);
+
+        // -- > a power of two, and no more segments than entries
+        this.segments = new Segment[Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxEntries))];
+
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segments.length);
+
+        int perSegment = (maxEntries + segments.length - 1) / segments.length;
+        for(int i = 0; i < segments.length; i++)
+            segments[i] = new Segment(perSegment);
+    }
+
+    /**
+     * Sets the limits applied when the input is actually parsed
+     */
+    public ParseCache limits(ParseLimits limits)
+    {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Parses the raw JSON input, unless the same input was already parsed as the same type
+     * @throws IllegalArgumentException if objType isn't marked {@link JSON.Immutable}
+     */
+    public <T extends JSONParsable> T parse(String raw, Class<T> objType) throws JSONParserException
+    {
+        checkImmutable(objType);
+
+        Key key = new Key(objType, hash(raw), raw, null);
+        Object cached = get(key);
+
+        if(cached != null) return objType.cast(cached);
+
+        T result = JSONAnnotationParser.parse(new JSONObject(raw), objType, limits);
+        put(key, result);
+
+        return result;
+    }
+
+    /**
+     * Parses the JSONObject, unless an equal one was already parsed as the same type.
+     * A hit walks the object twice (to hash it and to compare it), so it only pays off
+     * for classes that take longer to parse than that; prefer the raw input where there is one.
+     * @throws IllegalArgumentException if objType isn't marked {@link JSON.Immutable}
+     */
+    public <T extends JSONParsable> T parse(JSONObject obj, Class<T> objType) throws JSONParserException
+    {
+        checkImmutable(objType);
+
+        long hash = hash(obj);
+        Object cached = get(new Key(objType, hash, null, obj));
+
+        if(cached != null) return objType.cast(cached);
+
+        T result = JSONAnnotationParser.parse(obj, objType, limits);
+
+        // -- > the caller may still change the object, so the key keeps a copy of it
+        put(new Key(objType, hash, null, new JSONObject(obj.toString())), result);
+
+        return result;
+    }
+
+    /**
+     * The cached equivalent of {@link JSONParsable.FromJSON#create(JSONObject, Class)}
+     */
+    public <T extends JSONParsable> T create(JSONObject jsonObject, Class<T> target)
+    {
+        T result = null;
+
+        try
+        {
+            result = parse(jsonObject, target);
+        }
+        catch (JSONParserException e)
+        {
+            System.err.println(e.getHumanReadableReason());
+        }
+
+        return result;
+    }
+
+    public void clear()
+    {
+        for(Segment s : segments)
+        {
+            s.lock.lock();
+            try
+            {
+                s.entries.clear();
+            }
+            finally
+            {
+                s.lock.unlock();
+            }
+        }
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /** @return how many objects were dropped, for lack of space or for being too old */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    public int size()
+    {
+        int size = 0;
+
+        for(Segment s : segments)
+        {
+            s.lock.lock();
+            try
+            {
+                size += s.entries.size();
+            }
+            finally
+            {
+                s.lock.unlock();
+            }
+        }
+
+        return size;
+    }
+
+    private static void checkImmutable(Class objType)
+    {
+        if(!objType.isAnnotationPresent(JSON.Immutable.class))
+            throw new IllegalArgumentException(String.format("%s is not marked as JSON.Immutable", objType.getName()));
+    }
+
+    /**
+     * Picks the segment from the top bits of the hash: the segment's map spreads
+     * its keys by the low bits, which would otherwise be the same for all of them
+     */
+    private Segment segment(Key key)
+    {
+        return segments.length == 1 ? segments[0] : segments[(int) (key.hash >>> segmentShift)];
+    }
+
+    private Object get(Key key)
+    {
+        Segment s = segment(key);
+        Object value = null;
+
+        s.lock.lock();
+        try
+        {
+            Cached e = s.entries.get(key);
+
+            if(e != null)
+            {
+                if(System.nanoTime() - e.created > ttlNanos)
+                {
+                    s.entries.remove(key);
+                    evictions.increment();
+                }
+                else
+                {
+                    value = e.value;
+                }
+            }
+        }
+        finally
+        {
+            s.lock.unlock();
+        }
+
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    private void put(Key key, Object value)
+    {
+        Segment s = segment(key);
+
+        s.lock.lock();
+        try
+        {
+            s.entries.put(key, new Cached(value, System.nanoTime()));
+        }
+        finally
+        {
+            s.lock.unlock();
+        }
+    }
+
+    private static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private long hash(String str)
+    {
+        return mix(fnv(str));
+    }
+
+    /** FNV-1a over the characters of the string, seeded */
+    private long fnv(String str)
+    {
+        long h = FNV_OFFSET ^ seed;
+
+        for(int i = 0; i < str.length(); i++)
+        {
+            h ^= str.charAt(i);
+            h *= FNV_PRIME;
+        }
+
+        return h;
+    }
+
+    /**
+     * Strings are hashed with the seed; numbers, booleans and {@link JSONObject#NULL}
+     * by their own hash codes, which are the same for values of equal content
+     */
+    private long hash(Object leaf, long at)
+    {
+        long h = leaf instanceof String ? fnv((String) leaf) : leaf.hashCode();
+        return mix(at + h * FNV_PRIME);
+    }
+
+    /**
+     * Hashes the content of the object. Every leaf value is hashed along with
+     * the path that leads to it (mixed once per leaf, the paths of nested objects and arrays
+     * once per node), and the results are summed, so neither the key order nor the order
+     * of the walk matter. Nested objects and arrays wait on an explicit stack.
+     */
+    private long hash(JSONObject obj)
+    {
+        ArrayDeque<Object> nodes = new ArrayDeque<Object>();
+        long[] paths = new long[16];
+        long sum = 0;
+
+        nodes.push(obj);
+        paths[0] = seed;
+
+        while(!nodes.isEmpty())
+        {
+            Object node = nodes.pop();
+            long path = paths[nodes.size()];
+
+            if(node instanceof JSONObject)
+            {
+                JSONObject json = (JSONObject) node;
+                Iterator keys = json.keys();
+
+                // -- > empty objects and arrays are leaves of their own
+                sum += mix(path ^ 0x6f626a);
+
+                while(keys.hasNext())
+                {
+                    String key = (String) keys.next();
+                    Object value = json.opt(key);
+                    // -- > the map has computed the key's hash already, the path carries the seed
+                    long at = path * 31 + key.hashCode();
+
+                    if(value instanceof JSONObject || value instanceof JSONArray)
+                    {
+                        paths = push(paths, nodes.size(), mix(at));
+                        nodes.push(value);
+                    }
+                    else if(value != null)
+                    {
+                        sum += hash(value, at);
+                    }
+                }
+            }
+            else
+            {
+                JSONArray arr = (JSONArray) node;
+
+                sum += mix(path ^ 0x617272);
+
+                for(int i = 0; i < arr.length(); i++)
+                {
+                    Object value = arr.opt(i);
+                    long at = path * 31 + i + 1;
+
+                    if(value instanceof JSONObject || value instanceof JSONArray)
+                    {
+                        paths = push(paths, nodes.size(), mix(at));
+                        nodes.push(value);
+                    }
+                    else if(value != null)
+                    {
+                        sum += hash(value, at);
+                    }
+                }
+            }
+        }
+
+        return mix(sum);
+    }
+
+    /** Stores the path of a node at the given depth of the walk's stack, growing it as needed */
+    private static long[] push(long[] paths, int index, long path)
+    {
+        if(index == paths.length)
+            paths = Arrays.copyOf(paths, paths.length * 2);
+
+        paths[index] = path;
+        return paths;
+    }
+
+    private static class Key
+    {
+        final Class type;
+        final long hash;
+        /** The raw input, or the JSONObject (a copy of it, once cached), compared on hits */
+        final String raw;
+        final JSONObject json;
+
+        Key(Class type, long hash, String raw, JSONObject json)
+        {
+            this.type = type;
+            this.hash = hash;
+            this.raw = raw;
+            this.json = json;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * type.hashCode() + (int) (hash ^ (hash >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof Key)) return false;
+
+            Key k = (Key) o;
+
+            if(type != k.type || hash != k.hash) return false;
+
+            return raw != null ? raw.equals(k.raw) : k.json != null && json.similar(k.json);
+        }
+    }
+
+    private static class Cached
+    {
+        final Object value;
+        final long created;
+
+        Cached(Object value, long created)
+        {
+            this.value = value;
+            this.created = created;
+        }
+    }
+
+    /** A bounded LRU map, guarded by its own lock */
+    private class Segment
+    {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<Key, Cached> entries;
+
+        Segment(final int capacity)
+        {
+            entries = new LinkedHashMap<Key, Cached>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest)
+                {
+                    if(size() <= capacity) return false;
+
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package me.tiagovalente.jsonannotation;
+
+/**
+ * Bounds on what a single parse may bind, for input that can't be trusted.
+ * When any of them is exceeded, parsing is aborted with a
+ * {@link JSONAnnotationParser.LimitExceededException}.
+ *
+ * Instances are immutable; each "with" method returns a copy.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public final class ParseLimits
+{
+    /** No limits at all (the default) */
+    public static final ParseLimits NONE =
+            new ParseLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /** How deep objects and collections may be nested (the root object is at depth 1) */
+    public final int maxDepth;
+    /** How many values may be bound in total, nested ones included */
+    public final int maxElements;
+    /** How many members a single collection (or map) may have */
+    public final int maxCollectionLength;
+    /** How long a single string may be */
+    public final int maxStringLength;
+
+    public ParseLimits(int maxDepth, int maxElements, int maxCollectionLength, int maxStringLength)
+    {
+        if(maxDepth <= 0 || maxElements < 0 || maxCollectionLength < 0 || maxStringLength < 0)
+            throw new IllegalArgumentException("Limits can't be negative, and depth must be at least 1");
+
+        this.maxDepth = maxDepth;
+        this.maxElements = maxElements;
+        this.maxCollectionLength = maxCollectionLength;
+        this.maxStringLength = maxStringLength;
+    }
+
+    public ParseLimits withMaxDepth(int maxDepth)
+    {
+        return new ParseLimits(maxDepth, maxElements, maxCollectionLength, maxStringLength);
+    }
+
+    public ParseLimits withMaxElements(int maxElements)
+    {
+        return new ParseLimits(maxDepth, maxElements, maxCollectionLength, maxStringLength);
+    }
+
+    public ParseLimits withMaxCollectionLength(int maxCollectionLength)
+    {
+        return new ParseLimits(maxDepth, maxElements, maxCollectionLength, maxStringLength);
+    }
+
+    public ParseLimits withMaxStringLength(int maxStringLength)
+    {
+        return new ParseLimits(maxDepth, maxElements, maxCollectionLength, maxStringLength);
+    }
+}
@@ -0,0 +1,372 @@
+package me.tiagovalente.jsonannotation;
+
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous front-end for the {@link JSONAnnotationParser}.
+ * Payloads (raw JSON strings or JSONObjects) are put in a bounded queue
+ * and parsed in batches by a limited number of workers on the given executor.
+ *
+ * Submitting blocks while the queue is full (backpressure).
+ * Neither the queue nor the dispatching use monitors, so the pipeline
+ * can be fed from, and run on, virtual threads without pinning them.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+public class ParsePipeline<T extends JSONParsable>
+{
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    private final Class<T> target;
+    private final Executor executor;
+    private final BlockingQueue<Work<T>> queue;
+    private final int batchSize;
+    private final int parallelism;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final Metrics metrics = new Metrics();
+    private volatile ParseLimits limits = ParseLimits.NONE;
+
+    /**
+     * Creates a pipeline running on the common ForkJoinPool
+     * @param target - The class every payload should be parsed as
+     */
+    public ParsePipeline(Class<T> target)
+    {
+        this(target, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors(),
+             DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param target - The class every payload should be parsed as
+     * @param executor - Where the parsing runs (e.g. a virtual-thread-per-task executor)
+     * @param parallelism - The maximum number of concurrently running workers
+     * @param queueCapacity - How many payloads may wait before submitting blocks
+     * @param batchSize - How many payloads a worker takes from the queue at once
+     */
+    public ParsePipeline(Class<T> target, Executor executor, int parallelism, int queueCapacity, int batchSize)
+    {
+        if(parallelism <= 0 || queueCapacity <= 0 || batchSize <= 0)
+            throw new IllegalArgumentException("Parallelism, queue capacity and batch size must be positive");
+
+        this.target = target;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.queue = new ArrayBlockingQueue<Work<T>>(queueCapacity);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the limits applied to every payload submitted from now on
+     * (payloads already queued keep the limits they were submitted with)
+     */
+    public ParsePipeline<T> limits(ParseLimits limits)
+    {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Queues a raw JSON payload for parsing, blocking while the queue is full
+     * @return a future completed with the parsed object, or exceptionally with
+     *  the JSONException or JSONParserException that prevented it (or with a RejectedExecutionException,
+     *  if the executor refused to run a worker while none was left)
+     */
+    public CompletableFuture<T> submit(String payload) throws InterruptedException
+    {
+        return enqueue(payload);
+    }
+
+    /**
+     * Queues a JSONObject for parsing, blocking while the queue is full
+     * @see #submit(String)
+     */
+    public CompletableFuture<T> submit(JSONObject payload) throws InterruptedException
+    {
+        return enqueue(payload);
+    }
+
+    /**
+     * Parses a stream of payloads (Strings or JSONObjects), delivering the results,
+     * in order, to the subscriber. The subscriber is called from this thread,
+     * and at most queue capacity payloads are parsed ahead of it.
+     * @return the number of objects successfully delivered
+     */
+    public long stream(Iterator<?> payloads, Subscriber<? super T> subscriber) throws InterruptedException
+    {
+        ArrayDeque<CompletableFuture<T>> window = new ArrayDeque<CompletableFuture<T>>();
+        ArrayDeque<Object> sources = new ArrayDeque<Object>();
+        int capacity = queue.remainingCapacity() + queue.size();
+        long delivered = 0;
+
+        while(payloads.hasNext())
+        {
+            if(window.size() >= capacity)
+                delivered += deliver(window.poll(), sources.poll(), subscriber);
+
+            Object payload = payloads.next();
+            window.add(enqueue(payload));
+            sources.add(payload);
+        }
+
+        while(!window.isEmpty())
+            delivered += deliver(window.poll(), sources.poll(), subscriber);
+
+        subscriber.onComplete();
+        return delivered;
+    }
+
+    public Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    private int deliver(CompletableFuture<T> future, Object payload, Subscriber<? super T> subscriber)
+            throws InterruptedException
+    {
+        try
+        {
+            subscriber.onNext(future.get());
+            return 1;
+        }
+        catch (ExecutionException e)
+        {
+            subscriber.onError(payload, e.getCause());
+            return 0;
+        }
+    }
+
+    private CompletableFuture<T> enqueue(Object payload) throws InterruptedException
+    {
+        Work<T> work = new Work<T>(payload, limits);
+
+        queue.put(work);
+        metrics.submitted.increment();
+        dispatch();
+
+        return work.future;
+    }
+
+    /** Starts a new worker, unless there are already enough of them */
+    private void dispatch()
+    {
+        while(true)
+        {
+            int active = activeWorkers.get();
+
+            if(active >= parallelism) return;
+
+            if(activeWorkers.compareAndSet(active, active + 1))
+            {
+                try
+                {
+                    executor.execute(new Worker());
+                }
+                catch (RejectedExecutionException e)
+                {
+                    activeWorkers.decrementAndGet();
+                    failStranded(e);
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fails whatever is queued if no worker is left to parse it
+     * (payloads queued while this one was being started didn't start their own)
+     */
+    private void failStranded(RejectedExecutionException cause)
+    {
+        if(activeWorkers.get() > 0) return;
+
+        List<Work<T>> stranded = new ArrayList<Work<T>>();
+        queue.drainTo(stranded);
+
+        for(Work<T> work : stranded)
+        {
+            metrics.record(work.enqueuedAt, true);
+            work.future.completeExceptionally(cause);
+        }
+    }
+
+    private T parse(Work<T> work) throws Exception
+    {
+        JSONObject obj = work.payload instanceof JSONObject
+                ? (JSONObject) work.payload
+                : new JSONObject(work.payload.toString());
+
+        return JSONAnnotationParser.parse(obj, target, work.limits);
+    }
+
+    /** Drains the queue in batches until it's empty */
+    private class Worker implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            List<Work<T>> batch = new ArrayList<Work<T>>(batchSize);
+            boolean counted = true;
+
+            try
+            {
+                while(true)
+                {
+                    queue.drainTo(batch, batchSize);
+
+                    if(batch.isEmpty())
+                    {
+                        activeWorkers.decrementAndGet();
+                        counted = false;
+
+                        // -- > something may have been queued after draining, but before leaving
+                        if(queue.isEmpty() || !reacquire()) return;
+
+                        counted = true;
+                        continue;
+                    }
+
+                    for(Work<T> work : batch)
+                        process(work);
+
+                    batch.clear();
+                }
+            }
+            finally
+            {
+                if(counted) activeWorkers.decrementAndGet();
+            }
+        }
+
+        private boolean reacquire()
+        {
+            while(true)
+            {
+                int active = activeWorkers.get();
+
+                if(active >= parallelism) return false;
+                if(activeWorkers.compareAndSet(active, active + 1)) return true;
+            }
+        }
+
+        private void process(Work<T> work)
+        {
+            try
+            {
+                T result = parse(work);
+                metrics.record(work.enqueuedAt, false);
+                work.future.complete(result);
+            }
+            catch (Throwable e)
+            {
+                metrics.record(work.enqueuedAt, true);
+                work.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class Work<T>
+    {
+        final Object payload;
+        /** The pipeline's limits when the payload was queued */
+        final ParseLimits limits;
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        final long enqueuedAt = System.nanoTime();
+
+        Work(Object payload, ParseLimits limits)
+        {
+            this.payload = payload;
+            this.limits = limits;
+        }
+    }
+
+    /**
+     * Receives the results of {@link #stream(Iterator, Subscriber)}, in order
+     */
+    public interface Subscriber<T>
+    {
+        void onNext(T value) throws InterruptedException;
+
+        void onError(Object payload, Throwable cause) throws InterruptedException;
+
+        void onComplete();
+    }
+
+    /**
+     * Counters for the pipeline. Latencies are measured from queuing to completion.
+     */
+    public class Metrics
+    {
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder totalLatency = new LongAdder();
+        private final AtomicLong maxLatency = new AtomicLong();
+
+        private void record(long enqueuedAt, boolean failure)
+        {
+            long latency = System.nanoTime() - enqueuedAt;
+
+            (failure ? failed : completed).increment();
+            totalLatency.add(latency);
+
+            long max = maxLatency.get();
+            while(latency > max && !maxLatency.compareAndSet(max, latency))
+                max = maxLatency.get();
+        }
+
+        public int getQueueDepth()
+        {
+            return queue.size();
+        }
+
+        public int getActiveWorkers()
+        {
+            return activeWorkers.get();
+        }
+
+        public long getSubmitted()
+        {
+            return submitted.sum();
+        }
+
+        public long getCompleted()
+        {
+            return completed.sum();
+        }
+
+        public long getFailed()
+        {
+            return failed.sum();
+        }
+
+        /** @return the mean latency in nanoseconds, or 0 if nothing was processed yet */
+        public long getMeanLatencyNanos()
+        {
+            long count = completed.sum() + failed.sum();
+            return count == 0 ? 0 : totalLatency.sum() / count;
+        }
+
+        public long getMaxLatencyNanos()
+        {
+            return maxLatency.get();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package me.tiagovalente.jsonannotation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The member plans of the classes seen by the {@link JSONParsableProcessor} at build time,
+ * so that {@link ClassPlan} can bind them without scanning their annotations.
+ *
+ * Each jar (or output directory) has its own index, under {@link #RESOURCE}; all the indexes
+ * visible to a class loader are read once, on the first plan built for one of its classes.
+ * Classes that aren't in any index are scanned as usual.
+ *
+ * @version 1.1.0
+ * @since 1.1.0
+ */
+final class PlanIndex
+{
+    static final String RESOURCE = "META-INF/jsonannotation/plans.idx";
+
+    private static final int VERSION = 1;
+
+    private static final Map<ClassLoader, Map<String, Entry[]>> INDEXES =
+            new WeakHashMap<ClassLoader, Map<String, Entry[]>>();
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private PlanIndex()
+    {}
+
+    /**
+     * @return the indexed members declared by the class itself (fields first, then transformation
+     * methods, as {@link ClassPlan} binds them), or null if it isn't indexed
+     */
+    static Entry[] lookup(Class type)
+    {
+        ClassLoader loader = type.getClassLoader();
+        if(loader == null) return null;
+
+        Map<String, Entry[]> index;
+
+        LOCK.lock();
+        try
+        {
+            index = INDEXES.get(loader);
+
+            if(index == null)
+            {
+                index = load(loader);
+                INDEXES.put(loader, index);
+            }
+        }
+        finally
+        {
+            LOCK.unlock();
+        }
+
+        return index.get(type.getName());
+    }
+
+    /**
+     * Reads every index visible to the loader. A broken one is skipped (its classes will be scanned).
+     * Each index only has the classes compiled along with it, so a class is in more than one
+     * only if it's on the class path more than once; then, as for loading it, the first one wins.
+     */
+    private static Map<String, Entry[]> load(ClassLoader loader)
+    {
+        Map<String, Entry[]> index = new HashMap<String, Entry[]>();
+
+        try
+        {
+            Enumeration<URL> resources = loader.getResources(RESOURCE);
+
+            while(resources.hasMoreElements())
+            {
+                Map<String, Entry[]> read = new HashMap<String, Entry[]>();
+
+                try
+                {
+                    InputStream in = resources.nextElement().openStream();
+                    try
+                    {
+                        read(new DataInputStream(new BufferedInputStream(in)), read);
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                }
+                catch (IOException e)
+                {
+                    continue;
+                }
+
+                for(Map.Entry<String, Entry[]> e : read.entrySet())
+                    if(!index.containsKey(e.getKey())) index.put(e.getKey(), e.getValue());
+            }
+        }
+        catch (IOException e)
+        {
+            // -- > no index at all, then
+        }
+
+        return index.isEmpty() ? Collections.<String, Entry[]>emptyMap() : index;
+    }
+
+    private static void read(DataInputStream in, Map<String, Entry[]> index) throws IOException
+    {
+        if(in.readInt() != VERSION) throw new IOException("Unknown plan index version");
+
+        int classes = in.readInt();
+
+        for(int i = 0; i < classes; i++)
+        {
+            String type = in.readUTF();
+            Entry[] entries = new Entry[in.readInt()];
+
+            for(int j = 0; j < entries.length; j++)
+                entries[j] = Entry.read(in);
+
+            index.put(type, entries);
+        }
+    }
+
+    /**
+     * Writes an index of the given classes (by binary name) and their members
+     */
+    static void write(DataOutputStream out, Map<String, List<Entry>> index) throws IOException
+    {
+        out.writeInt(VERSION);
+        out.writeInt(index.size());
+
+        for(Map.Entry<String, List<Entry>> e : index.entrySet())
+        {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue().size());
+
+            for(Entry entry : e.getValue())
+                entry.write(out);
+        }
+    }
+
+    /**
+     * An annotated field or transformation method, with everything its annotations say.
+     * Types are named as by {@link Class#getTypeName()}.
+     */
+    static final class Entry
+    {
+        final ClassPlan.Kind kind;
+        /** The name of the field or method */
+        final String name;
+        /** The parameter types of the method, null for fields */
+        final String[] parameters;
+
+        final String key;
+        final JSON.Type type;
+        final boolean compact;
+        /** The {@link JSON.ParseAs} class, or null */
+        final String parseAs;
+        /** The {@link JSON.Convert} class, or null */
+        final String converter;
+
+        final boolean required;
+        final double min;
+        final double max;
+        final int maxLength;
+        final String pattern;
+        final int minSize;
+        final int maxSize;
+
+        Entry(ClassPlan.Kind kind, String name, String[] parameters, String key, JSON.Type type, boolean compact,
+              String parseAs, String converter, boolean required, double min, double max, int maxLength,
+              String pattern, int minSize, int maxSize)
+        {
+            this.kind = kind;
+            this.name = name;
+            this.parameters = parameters;
+            this.key = key;
+            this.type = type;
+            this.compact = compact;
+            this.parseAs = parseAs;
+            this.converter = converter;
+            this.required = required;
+            this.min = min;
+            this.max = max;
+            this.maxLength = maxLength;
+            this.pattern = pattern;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+        }
+
+        private static Entry read(DataInputStream in) throws IOException
+        {
+            ClassPlan.Kind kind = ClassPlan.Kind.values()[in.readUnsignedByte()];
+            String name = in.readUTF();
+            String[] parameters = null;
+
+            if(in.readBoolean())
+            {
+                parameters = new String[in.readUnsignedByte()];
+                for(int i = 0; i < parameters.length; i++)
+                    parameters[i] = in.readUTF();
+            }
+
+            return new Entry(kind, name, parameters, in.readUTF(), JSON.Type.valueOf(in.readUTF()),
+                             in.readBoolean(), optional(in.readUTF()), optional(in.readUTF()),
+                             in.readBoolean(), in.readDouble(), in.readDouble(), in.readInt(),
+                             in.readUTF(), in.readInt(), in.readInt());
+        }
+
+        private void write(DataOutputStream out) throws IOException
+        {
+            out.writeByte(kind.ordinal());
+            out.writeUTF(name);
+            out.writeBoolean(parameters != null);
+
+            if(parameters != null)
+            {
+                out.writeByte(parameters.length);
+                for(String p : parameters)
+                    out.writeUTF(p);
+            }
+
+            out.writeUTF(key);
+            out.writeUTF(type.name());
+            out.writeBoolean(compact);
+            out.writeUTF(parseAs != null ? parseAs : "");
+            out.writeUTF(converter != null ? converter : "");
+            out.writeBoolean(required);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            out.writeInt(maxLength);
+            out.writeUTF(pattern);
+            out.writeInt(minSize);
+            out.writeInt(maxSize);
+        }
+
+        private static String optional(String name)
+        {
+            return name.length() == 0 ? null : name;
+        }
+    }
+}